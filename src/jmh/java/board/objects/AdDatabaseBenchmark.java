@@ -0,0 +1,251 @@
+/**
+ * Package containing the fundamental objects of the Board application.
+ */
+package board.objects;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Microbenchmark of the storage and matching hot paths of the AdDatabase,
+ * on synthetic boards of 1k to 1M ads owned by a tenth as many users.
+ * Every iteration starts from a fresh copy of the board, whatever the previous one registered.
+ * A single size can be run with 'gradle jmh -PjmhArgs="AdDatabaseBenchmark -p ads=1000"'.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class AdDatabaseBenchmark {
+
+  @Param({"1000", "10000", "100000", "1000000"})
+  private int ads;
+
+  private Path board;
+  private Path path;
+  private AdDatabase adDatabase;
+  private Random random;
+  private int nextAd;
+
+  /**
+   * Ad registered before every invocation of removeAd, to be removed by it.
+   */
+  @State(Scope.Thread)
+  public static class RemovableAd {
+
+    private Ad ad;
+
+    /**
+     * Registers the ad to be removed.
+     *
+     * @param board the board the ad is registered into.
+     * @throws IOException if the database cannot be written.
+     */
+    @Setup(Level.Invocation)
+    public void register(AdDatabaseBenchmark board) throws IOException {
+      ad = board.newAd();
+      board.adDatabase.registerEntry(ad);
+    }
+  }
+
+  /**
+   * Expired ads registered before every invocation of removeExpiredAds, to be swept by it.
+   */
+  @State(Scope.Thread)
+  public static class ExpiredAds {
+
+    /**
+     * Number of expired ads registered before every sweep.
+     */
+    public static final int EXPIRED_ADS = 100;
+
+    /**
+     * Registers the ads to be swept, expired a day ago.
+     *
+     * @param board the board the ads are registered into.
+     * @throws IOException if the database cannot be written.
+     */
+    @Setup(Level.Invocation)
+    public void register(AdDatabaseBenchmark board) throws IOException {
+      long expiration = Instant.now().minus(1, ChronoUnit.DAYS).getEpochSecond();
+      for (int i = 0; i < EXPIRED_ADS; i++) {
+        Ad ad = board.newAd();
+        board.adDatabase.registerEntry(Ad.trusted(
+          ad.getUsername(), ad.getType(), ad.getDescription(), ad.getKeywords(), expiration, ad.getPrice()
+        ));
+      }
+    }
+  }
+
+  /**
+   * Writes the synthetic board, copied afresh for every iteration.
+   *
+   * @throws IOException if the database cannot be written.
+   */
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    board = SyntheticBoard.adDatabase(ads);
+    path = Files.createTempFile("AdDB", ".bench");
+  }
+
+  /**
+   * Loads a fresh copy of the synthetic board,
+   * so that every iteration starts from a board of the same size.
+   *
+   * @throws IOException if the database cannot be copied or read.
+   */
+  @Setup(Level.Iteration)
+  public void load() throws IOException {
+    Files.copy(board, path, StandardCopyOption.REPLACE_EXISTING);
+    adDatabase = new AdDatabase(path.toString());
+    random = new Random(7);
+    nextAd = ads;
+  }
+
+  /**
+   * Closes the board loaded for the iteration.
+   *
+   * @throws IOException if the database cannot be written.
+   */
+  @TearDown(Level.Iteration)
+  public void close() throws IOException {
+    adDatabase.close();
+  }
+
+  /**
+   * Deletes the synthetic board and its copy.
+   *
+   * @throws IOException if the database cannot be deleted.
+   */
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    SyntheticBoard.delete(path);
+    SyntheticBoard.delete(board);
+  }
+
+  /**
+   * Registers a new ad, appending its record to the log.
+   *
+   * @return the registered ad.
+   * @throws IOException if the database cannot be written.
+   */
+  @Benchmark
+  public Ad registerEntry() throws IOException {
+    Ad ad = newAd();
+    adDatabase.registerEntry(ad);
+    return ad;
+  }
+
+  /**
+   * Removes an ad, appending its tombstone to the log.
+   *
+   * @param removableAd the ad to be removed.
+   * @return true if the ad was removed.
+   * @throws IOException if the database cannot be written.
+   */
+  @Benchmark
+  public boolean removeAd(RemovableAd removableAd) throws IOException {
+    return adDatabase.removeAd(removableAd.ad);
+  }
+
+  /**
+   * Sweeps the board for the expired ads registered before the invocation.
+   *
+   * @param expiredAds the ads to be swept.
+   * @return the report of the sweep.
+   * @throws IOException if the database cannot be rewritten.
+   */
+  @Benchmark
+  public ExpirySweep removeExpiredAds(ExpiredAds expiredAds) throws IOException {
+    return adDatabase.removeExpiredAds();
+  }
+
+  /**
+   * Reads every record of the log through the Iterator.
+   *
+   * @return the number of records read.
+   * @throws IOException if the database cannot be mapped.
+   */
+  @Benchmark
+  public int iterate() throws IOException {
+    int records = 0;
+    try (AdDatabase.Iterator iterator = adDatabase.new Iterator()) {
+      while(iterator.hasNext()) {
+        if(iterator.getNext() != null) records++;
+      }
+    }
+    return records;
+  }
+
+  /**
+   * Counts the live ads of a user in the log, testing the records in place
+   * through the reader of the Iterator, without decoding the ads.
+   *
+   * @return the number of live ads of the user.
+   * @throws IOException if the database cannot be mapped.
+   */
+  @Benchmark
+  public int filterByOwner() throws IOException {
+    byte[] owner = SyntheticBoard.username(0).getBytes(StandardCharsets.UTF_8);
+    long now = Instant.now().getEpochSecond();
+    int ownedAds = 0;
+    try (AdDatabase.Iterator iterator = adDatabase.new Iterator()) {
+      while(iterator.hasNext()) {
+        AdRecordReader record = iterator.nextRecord();
+        if(!record.isTombstone() && !record.hasExpired(now) && record.isOwnedBy(owner)) ownedAds++;
+      }
+    }
+    return ownedAds;
+  }
+
+  /**
+   * Reads the live ads of the log through the parallel Spliterator.
+   *
+   * @return the number of live ads read.
+   * @throws IOException if the database cannot be mapped.
+   */
+  @Benchmark
+  public long parallelScan() throws IOException {
+    return adDatabase.scan().count();
+  }
+
+  /**
+   * Matches the ads of a user and loads the first page of the matches,
+   * as the AdTable does when the user asks for the matches.
+   *
+   * @return the first cell of the matches, null if there are none.
+   */
+  @Benchmark
+  public Object match() {
+    AdCursor cursor = adDatabase.getMatchCursor(SyntheticBoard.username(0), ProgressListener.NONE);
+    PagedAdTableModel model = new PagedAdTableModel(cursor);
+    return model.getRowCount() > 0 ? model.getValueAt(0, 0) : null;
+  }
+
+  private Ad newAd() {
+    return SyntheticBoard.ad(random, nextAd++, SyntheticBoard.usersOf(ads));
+  }
+}
@@ -0,0 +1,133 @@
+/**
+ * Package containing the fundamental objects of the Board application.
+ */
+package board.objects;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Generator of the synthetic boards the benchmarks run on.
+ * The boards are written straight to temporary database files
+ * and are the same on every run, so that every measure is reproducible.
+ */
+final class SyntheticBoard {
+
+  /**
+   * Number of ads owned by every synthetic user.
+   */
+  static final int ADS_PER_USER = 10;
+
+  /**
+   * Password of every synthetic user.
+   */
+  static final String PASSWORD = "synthetic";
+
+  private static final long SEED = 42;
+  private static final int VOCABULARY = 1000;
+  private static final int KEYWORDS_PER_AD = 3;
+
+  private SyntheticBoard() {}
+
+  /**
+   * Gets the username of a synthetic user.
+   *
+   * @param user the index of the user.
+   * @return the username.
+   */
+  static String username(int user) {
+    return "user" + user;
+  }
+
+  /**
+   * Gets the number of users owning the ads of a synthetic board.
+   *
+   * @param ads the number of ads of the board.
+   * @return the number of users.
+   */
+  static int usersOf(int ads) {
+    return Math.max(ads / ADS_PER_USER, 1);
+  }
+
+  /**
+   * Generates a synthetic ad, the i-th of a board of the given number of users.
+   * The keywords are drawn from a fixed vocabulary, so that ads match each other.
+   *
+   * @param random the source of the keywords, type and price.
+   * @param i the index of the ad.
+   * @param users the number of users owning the ads.
+   * @return the ad.
+   */
+  static Ad ad(Random random, int i, int users) {
+    StringBuilder keywords = new StringBuilder();
+    for (int k = 0; k < KEYWORDS_PER_AD; k++) {
+      if(k > 0) keywords.append(',');
+      keywords.append("keyword").append(random.nextInt(VOCABULARY));
+    }
+    return new Ad(
+      username(i % users),
+      random.nextBoolean() ? Ad.AdType.BUY : Ad.AdType.SELL,
+      "synthetic ad " + i,
+      keywords.toString(),
+      30 + random.nextInt(335),
+      random.nextInt(100000) / 100.0
+    );
+  }
+
+  /**
+   * Writes an ad database of synthetic ads to a temporary file.
+   *
+   * @param ads the number of ads.
+   * @return the path of the database file.
+   * @throws IOException if the file cannot be written.
+   */
+  static Path adDatabase(int ads) throws IOException {
+    Path path = Files.createTempFile("AdDB", ".bench");
+    Random random = new Random(SEED);
+    int users = usersOf(ads);
+    try (AdRecordWriter writer = new AdRecordWriter(
+      new BufferedOutputStream(Files.newOutputStream(path), 1 << 16)
+    )) {
+      writer.writeHeader();
+      for (int i = 0; i < ads; i++) {
+        writer.write(ad(random, i, users));
+      }
+    }
+    return path;
+  }
+
+  /**
+   * Writes a user database of synthetic users to a temporary file.
+   * Every user has the same password, hashed once.
+   *
+   * @param users the number of users.
+   * @return the path of the database file.
+   * @throws IOException if the file cannot be written.
+   */
+  static Path userDatabase(int users) throws IOException {
+    Path path = Files.createTempFile("UsrDB", ".bench");
+    String passwordHash = PasswordHash.hash(PASSWORD);
+    try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(path), 1 << 16)) {
+      for (int i = 0; i < users; i++) {
+        out.write(Database.encodeEntry(User.trusted(username(i), passwordHash)));
+      }
+    }
+    return path;
+  }
+
+  /**
+   * Deletes a database file and the files kept next to it.
+   *
+   * @param path the path of the database file.
+   * @throws IOException if a file cannot be deleted.
+   */
+  static void delete(Path path) throws IOException {
+    Files.deleteIfExists(path);
+    Files.deleteIfExists(path.resolveSibling(path.getFileName() + ".lock"));
+    Files.deleteIfExists(path.resolveSibling(path.getFileName() + ".compact"));
+  }
+}
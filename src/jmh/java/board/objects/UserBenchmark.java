@@ -0,0 +1,60 @@
+/**
+ * Package containing the fundamental objects of the Board application.
+ */
+package board.objects;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Microbenchmark of the construction of a User.
+ * Compares the former regex-based validation with the character scan
+ * and with the trusted constructor used for the records read from disk.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class UserBenchmark {
+
+  private String username = "marco.rossi";
+  private String password = "pbkdf2$65536$c2FsdHNhbHRzYWx0c2FsdA==$aGFzaGhhc2hoYXNoaGFzaA==";
+
+  /**
+   * Validates the credentials compiling the "\\s" regular expression twice,
+   * as the User constructor used to do.
+   * 
+   * @return true if the credentials are valid.
+   */
+  @Benchmark
+  public boolean regexValidation() {
+    return !Pattern.compile("\\s").matcher(username).find() &&
+           !Pattern.compile("\\s").matcher(password).find();
+  }
+
+  /**
+   * Constructs a User through the validating constructor.
+   * 
+   * @return the new User.
+   */
+  @Benchmark
+  public User validatedUser() {
+    return new User(username, password);
+  }
+
+  /**
+   * Constructs a User through the trusted constructor.
+   * 
+   * @return the new User.
+   */
+  @Benchmark
+  public User trustedUser() {
+    return User.trusted(username, password);
+  }
+}
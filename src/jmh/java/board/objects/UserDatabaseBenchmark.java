@@ -0,0 +1,94 @@
+/**
+ * Package containing the fundamental objects of the Board application.
+ */
+package board.objects;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Microbenchmark of the login of the UserDatabase,
+ * on synthetic boards of 1k to 1M users.
+ * The index of the users is loaded once, so the measure is the lookup
+ * plus the verification of the password hash.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class UserDatabaseBenchmark {
+
+  @Param({"1000", "10000", "100000", "1000000"})
+  private int users;
+
+  private Path path;
+  private UserDatabase userDatabase;
+  private Random random = new Random(7);
+
+  /**
+   * Writes the synthetic users and loads their index.
+   *
+   * @throws IOException if the database cannot be written or read.
+   */
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    path = SyntheticBoard.userDatabase(users);
+    userDatabase = new UserDatabase(path.toString());
+    userDatabase.login(SyntheticBoard.username(0), SyntheticBoard.PASSWORD);
+  }
+
+  /**
+   * Closes and deletes the synthetic users.
+   *
+   * @throws IOException if the database cannot be closed or deleted.
+   */
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    userDatabase.close();
+    SyntheticBoard.delete(path);
+  }
+
+  /**
+   * Logs in a random user with the right password.
+   *
+   * @throws IOException if the database cannot be read.
+   */
+  @Benchmark
+  public void login() throws IOException {
+    userDatabase.login(SyntheticBoard.username(random.nextInt(users)), SyntheticBoard.PASSWORD);
+  }
+
+  /**
+   * Attempts to log in a user that does not exist.
+   *
+   * @return true if the login was refused.
+   * @throws IOException if the database cannot be read.
+   */
+  @Benchmark
+  public boolean loginUnknownUser() throws IOException {
+    try {
+      userDatabase.login("nobody", SyntheticBoard.PASSWORD);
+      return false;
+    } catch (IllegalArgumentException e) {
+      return true;
+    }
+  }
+}
@@ -6,23 +6,40 @@ package board;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.List;
 import java.util.Observable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
 
 import board.objects.Ad;
+import board.objects.AdCursor;
 import board.objects.AdDatabase;
-import board.objects.User;
+import board.objects.AdMatch;
+import board.objects.ProgressListener;
 import board.objects.UserDatabase;
+import board.service.BoardException;
+import board.service.BoardService;
 
 /**
- * Wrapper class to create a unified model
+ * Wrapper class to create a unified model.
+ * The database work requested by the views runs on a worker thread, in the order
+ * it is requested, and its results are handed back on the event dispatch thread.
  *
  */
 public class Board extends Observable {
   
-  private UserDatabase userDatabase;
-  private AdDatabase adDatabase;
+  private BoardService boardService;
+  private String username, password;
+  private ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+    Thread thread = new Thread(r, "Board worker");
+    thread.setDaemon(true);
+    return thread;
+  });
 
   /**
    * Path containing the user database.
@@ -33,14 +50,19 @@ public class Board extends Observable {
    * Path containing the ad database.
    */
   public static final String AD_FILE_PATH = "../AdDatabase";
+
+  /**
+   * Maximum number of matches shown to the user.
+   */
+  public static final int MAX_MATCHES = 100;
   
   /**
    * Constructor.
+   * 
+   * @throws BoardException if a database cannot be opened.
    */
-  public Board() 
-  throws IOException, IllegalArgumentException, FileNotFoundException {
-    userDatabase = new UserDatabase(USR_FILE_PATH);
-    adDatabase = new AdDatabase(AD_FILE_PATH);
+  public Board() throws BoardException {
+    boardService = new BoardService(USR_FILE_PATH, AD_FILE_PATH);
   }
 
   /**
@@ -49,7 +71,7 @@ public class Board extends Observable {
    * @return the username.
    */
   public String getUsername() {
-    return userDatabase.getUsername();
+    return username;
   }
 
   /**
@@ -58,7 +80,7 @@ public class Board extends Observable {
    * @param username the username.
    */
   public void setUsername(String username) {
-    userDatabase.setUsername(username);
+    this.username = username;
   }
 
   /**
@@ -67,66 +89,109 @@ public class Board extends Observable {
    * @param password the password.
    */
   public void setPassword(String password) {
-    userDatabase.setPassword(password);
+    this.password = password;
+  }
+
+  /**
+   * Gets every ad contained in the Board.
+   * 
+   * @return the list of ads.
+   * @throws BoardException if the ad database cannot be read.
+   */
+  public List<Ad> getAds() throws BoardException {
+    return boardService.getAds();
+  }
+
+  /**
+   * Gets the ads of the current Board user.
+   * 
+   * @return the list of ads owned by the current user.
+   * @throws BoardException if the ad database cannot be read.
+   */
+  public List<Ad> getUserAds() throws BoardException {
+    return boardService.getAdsOf(getUsername());
+  }
+
+  /**
+   * Gets the ads of the other users that best match the ads of the current Board user.
+   * 
+   * @return the list of matches, sorted by decreasing score.
+   * @throws BoardException if the ad database cannot be read.
+   */
+  public List<AdMatch> getMatches() throws BoardException {
+    return boardService.match(getUsername(), MAX_MATCHES);
+  }
+
+  /**
+   * Loads the ads of the current Board user on the worker of the Board.
+   * 
+   * @return the future completed on the event dispatch thread with the list of ads.
+   */
+  public CompletableFuture<List<Ad>> loadUserAds() {
+    return submit(() -> boardService.getAdsOf(getUsername()), "Unable to load the ads");
   }
 
   /**
-   * Saves a new ad into the Board.
+   * Matches the ads of the current Board user on the worker of the Board.
+   * The matching is given up if the returned future is cancelled.
+   * 
+   * @param progress the listener to the progress of the matching,
+   * called from the worker of the Board.
+   * @return the future completed on the event dispatch thread with
+   * a cursor over every match, best first, to be read a window at a time.
+   */
+  public CompletableFuture<AdCursor> matchAds(ProgressListener progress) {
+    return submit(() -> boardService.matchCursor(getUsername(), progress), "Unable to match the ads");
+  }
+
+  /**
+   * Saves a new ad into the Board on the worker of the Board.
    * 
    * @param ad the ad to be saved.
+   * @return the future completed on the event dispatch thread once the ad is saved.
    */
-  public void saveAd(Ad ad) {
-    try {
-      adDatabase.registerEntry(ad);
-    } catch (IOException |IllegalArgumentException e) {
-      JOptionPane.showMessageDialog(null, e.getMessage(),
-      "Invalid ad registration", JOptionPane.WARNING_MESSAGE);
-    }
+  public CompletableFuture<Void> saveAd(Ad ad) {
+    return submit(() -> {
+      boardService.saveAd(getUsername(), ad);
+      return null;
+    }, "Invalid ad registration");
   }
 
   /**
-   * Removes an ad from the Board.
+   * Removes an ad from the Board on the worker of the Board.
    * 
    * @param ad the ad to be removed.
+   * @return the future completed on the event dispatch thread
+   * with true if the ad was removed.
    */
-  public void removeAd(Ad ad) {
-    try {
-      adDatabase.removeAd(ad);
-    } catch (IOException e) {
-      JOptionPane.showMessageDialog(null, e.getMessage(),
-      "Invalid ad removal", JOptionPane.WARNING_MESSAGE);
-    }
+  public CompletableFuture<Boolean> removeAd(Ad ad) {
+    return submit(() -> boardService.removeAd(getUsername(), ad), "Invalid ad removal");
   }
 
   /**
-   * Authenticates the user that's attempting to use the Board.
+   * Authenticates the user that's attempting to use the Board
+   * on the worker of the Board.
+   * 
+   * @return the future completed on the event dispatch thread once the user is logged in.
    */
-  public void loginUser() {
-    try {
-      userDatabase.login();
-      signalObservers("Login");
-    } catch (FileNotFoundException | IllegalArgumentException e) {
-      JOptionPane.showMessageDialog(null,
-      e.getMessage(), "Invalid login",
-      JOptionPane.WARNING_MESSAGE);
-    }
+  public CompletableFuture<Void> loginUser() {
+    return submit(() -> {
+      boardService.login(username, password);
+      return null;
+    }, "Invalid login").thenRun(() -> signalObservers("Login"));
   }
 
   /**
-   * Registers the user that's attempting to use the Board.
+   * Registers the user that's attempting to use the Board
+   * on the worker of the Board.
+   * 
+   * @return the future completed on the event dispatch thread once the user is registered.
    */
-  public void registerUser() {
-    try {
-      userDatabase.registerEntry(new User(
-        userDatabase.getUsername(),
-        userDatabase.getPassword()
-      ));
-      signalObservers("Register");
-    } catch (IllegalArgumentException | IOException e) {
-      JOptionPane.showMessageDialog(null,
-      e.getMessage(), "Invalid registration",
-      JOptionPane.WARNING_MESSAGE);
-    }
+  public CompletableFuture<Void> registerUser() {
+    return submit(() -> {
+      boardService.register(username, password);
+      return null;
+    }, "Invalid registration").thenRun(() -> signalObservers("Register"));
   }
 
   /**
@@ -141,14 +206,15 @@ public class Board extends Observable {
      * @throws FileNotFoundException if the file does not exist,
      * is a directory rather than a regular file,
      * or for some other reason cannot be opened for reading.
+     * @throws IOException if the file cannot be mapped in memory.
      */
-    public UserIterator() throws FileNotFoundException {
-      userDatabase.super();
+    public UserIterator() throws FileNotFoundException, IOException {
+      boardService.getUserDatabase().super();
     }
   }
 
   /**
-   * Iterator for the ads contained in the Board.
+   * Iterator for the records of the ad log of the Board.
    *
    */
   public class AdIterator extends AdDatabase.Iterator {
@@ -159,12 +225,60 @@ public class Board extends Observable {
      * @throws FileNotFoundException if the file does not exist,
      * is a directory rather than a regular file,
      * or for some other reason cannot be opened for reading.
+     * @throws IOException if the file cannot be mapped in memory
+     * or is not a binary ad database.
      */
-    public AdIterator() throws FileNotFoundException {
-      adDatabase.super();
+    public AdIterator() throws FileNotFoundException, IOException {
+      boardService.getAdDatabase().super();
     }
   }
 
+  /*
+   * Task of the BoardService run on the worker of the Board.
+   */
+  @FunctionalInterface
+  private interface BoardTask<T> {
+    T call() throws BoardException;
+  }
+
+  /*
+   * Runs a task on the worker of the Board, so that the database work never blocks
+   * the event dispatch thread, and completes the returned future on the event dispatch thread.
+   * A failure is reported to the user before the future completes; cancelling the future
+   * interrupts the task.
+   */
+  private <T> CompletableFuture<T> submit(BoardTask<T> task, String errorTitle) {
+    CompletableFuture<T> result = new CompletableFuture<>();
+    Future<?> running = worker.submit(() -> {
+      try {
+        T value = task.call();
+        SwingUtilities.invokeLater(() -> result.complete(value));
+      } catch (BoardException e) {
+        if(e.getReason() == BoardException.Reason.CANCELLED)
+          SwingUtilities.invokeLater(() -> result.cancel(false));
+        else
+          reportFailure(result, e, errorTitle);
+      } catch (RuntimeException e) {
+        reportFailure(result, e, errorTitle);
+      }
+    });
+    result.whenComplete((value, error) -> {
+      if(result.isCancelled()) running.cancel(true);
+    });
+    return result;
+  }
+
+  /*
+   * Reports the failure of a task to the user and fails its future, on the event dispatch thread.
+   */
+  private void reportFailure(CompletableFuture<?> result, Exception e, String errorTitle) {
+    SwingUtilities.invokeLater(() -> {
+      if(!result.isDone())
+        JOptionPane.showMessageDialog(null, e.getMessage(), errorTitle, JOptionPane.WARNING_MESSAGE);
+      result.completeExceptionally(e);
+    });
+  }
+
   /*
    * Wrapper function to notify the observers of the model in a handy way
    */
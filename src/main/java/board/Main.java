@@ -4,16 +4,25 @@
  */
 package board;
 
-import java.io.FileNotFoundException;
-import java.io.IOException;
+import javax.swing.JOptionPane;
+
+import board.metrics.Metrics;
+import board.service.BoardException;
 
 /**
  * Executable class of the Board application
  *
  */
 public class Main {
-  public static void main(String[] args)
-  throws IOException, IllegalArgumentException, FileNotFoundException {
-    new Frame(new Board());
+  public static void main(String[] args) {
+    Metrics.startExport();
+    try {
+      new Frame(new Board());
+    } catch (BoardException e) {
+      JOptionPane.showMessageDialog(null,
+      e.getMessage(), "Unable to create the database",
+      JOptionPane.ERROR_MESSAGE);
+      System.exit(1);
+    }
   }
 }
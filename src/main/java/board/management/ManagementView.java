@@ -97,6 +97,7 @@ public class ManagementView extends JPanel implements Observer {
         adTable.removeSelectedAd();
         break;
       case "Match your ads":
+        adTable.cancelLoading();
         Board board = (Board)o;
         try {
           MatchingView matchView = new MatchingView(board, frame);
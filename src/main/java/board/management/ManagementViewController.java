@@ -55,8 +55,8 @@ public class ManagementViewController implements ActionListener {
         break;
       case "Remove":
         try {
-          board.removeAd(adTable.getSelectedAd());
-          board.signalObservers("Remove");
+          board.removeAd(adTable.getSelectedAd())
+            .thenRun(() -> board.signalObservers("Remove"));
         } catch (IllegalArgumentException e) {
           if(Objects.equals(e.getMessage(), "No ad selected")) {
             JOptionPane.showMessageDialog(null, e.getMessage(),
@@ -14,7 +14,9 @@ import java.util.Observer;
 import javax.swing.JButton;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.JProgressBar;
 import javax.swing.JScrollPane;
+import javax.swing.SwingUtilities;
 
 import board.Board;
 import board.Frame;
@@ -29,6 +31,7 @@ import board.objects.AdTable;
 public class MatchingView extends JPanel implements Observer {
 
   private Frame frame;
+  private AdTable adTable;
 
   /**
    * Two-argument constructor.
@@ -49,14 +52,20 @@ public class MatchingView extends JPanel implements Observer {
     JPanel jPanelCenter = new JPanel(new FlowLayout());
     JPanel jPanelSouth = new JPanel(new FlowLayout());
     
-    AdTable adTable = new AdTable(board, false);
-    adTable.match();
+    adTable = new AdTable(board, false);
+    JProgressBar progressBar = new JProgressBar();
+    progressBar.setStringPainted(true);
+    adTable.match((done, total) -> SwingUtilities.invokeLater(() -> {
+      progressBar.setMaximum(total);
+      progressBar.setValue(done);
+    })).whenComplete((result, error) -> progressBar.setVisible(false));
 
     jPanelCenter.add(new JScrollPane(adTable));
 
     JButton jButtonBack = new JButton("Back");
     jButtonBack.addActionListener(new MatchingViewController(board));
     jPanelSouth.add(jButtonBack);
+    jPanelSouth.add(progressBar);
 
     add(jPanelCenter, BorderLayout.CENTER);
     add(jPanelSouth, BorderLayout.SOUTH);
@@ -73,6 +82,7 @@ public class MatchingView extends JPanel implements Observer {
   @Override
   public void update(Observable o, Object arg) {
     if(Objects.equals((String)arg, "Back")) {
+      adTable.cancelLoading();
       Board board = (Board)o;
       try {
         ManagementView managementView = new ManagementView(board, frame);
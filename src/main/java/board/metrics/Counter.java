@@ -0,0 +1,42 @@
+/**
+ * Package containing the metrics of the Board application.
+ */
+package board.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Class representing a monotonic counter.
+ * Increments from many threads do not contend with each other.
+ */
+public final class Counter {
+
+  private LongAdder count = new LongAdder();
+
+  Counter() {}
+
+  /**
+   * Increments the counter by one.
+   */
+  public void increment() {
+    count.increment();
+  }
+
+  /**
+   * Increments the counter by a given amount.
+   *
+   * @param amount the amount to be added.
+   */
+  public void add(long amount) {
+    count.add(amount);
+  }
+
+  /**
+   * Gets the current value of the counter.
+   *
+   * @return the value.
+   */
+  public long get() {
+    return count.sum();
+  }
+}
@@ -0,0 +1,200 @@
+/**
+ * Package containing the metrics of the Board application.
+ */
+package board.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Class recording the distribution of non-negative values, such as latencies
+ * in nanoseconds or the bytes read by a scan.
+ * Values are counted in buckets that double in width every SUB_BUCKETS buckets,
+ * so that any value is reported within 1/SUB_BUCKETS of its magnitude
+ * with a fixed, small footprint, and recording is a few atomic increments.
+ */
+public final class Histogram {
+
+  /**
+   * Number of buckets per power of two.
+   */
+  public static final int SUB_BUCKETS = 8;
+
+  private static final int SUB_BUCKET_BITS = 3;
+  private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+  private AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+  private LongAdder count = new LongAdder();
+  private LongAdder sum = new LongAdder();
+  private LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+  Histogram() {}
+
+  /**
+   * Records a value; negative values are recorded as 0.
+   *
+   * @param value the value to be recorded.
+   */
+  public void record(long value) {
+    if(value < 0) value = 0;
+    buckets.incrementAndGet(bucketOf(value));
+    count.increment();
+    sum.add(value);
+    max.accumulate(value);
+  }
+
+  /**
+   * Records the nanoseconds elapsed since a given System.nanoTime().
+   *
+   * @param startNanos the start of the operation.
+   */
+  public void recordSince(long startNanos) {
+    record(System.nanoTime() - startNanos);
+  }
+
+  /**
+   * Takes a snapshot of the distribution recorded so far.
+   * The snapshot is not atomic: values recorded while it is taken
+   * may be missing from some of its figures.
+   *
+   * @return the snapshot.
+   */
+  public Snapshot snapshot() {
+    long[] counts = new long[BUCKETS];
+    for (int i = 0; i < BUCKETS; i++) {
+      counts[i] = buckets.get(i);
+    }
+    return new Snapshot(counts, count.sum(), sum.sum(), max.get());
+  }
+
+  private static int bucketOf(long value) {
+    if(value < SUB_BUCKETS) return (int)value;
+    int magnitude = 63 - Long.numberOfLeadingZeros(value);
+    int subBucket = (int)(value >>> (magnitude - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return (magnitude - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+  }
+
+  /*
+   * Gets the highest value counted in a bucket.
+   */
+  private static long upperBoundOf(int bucket) {
+    if(bucket < SUB_BUCKETS) return bucket;
+    int magnitude = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+    long subBucket = bucket % SUB_BUCKETS;
+    long lowerBound = (1L << magnitude) + (subBucket << (magnitude - SUB_BUCKET_BITS));
+    return lowerBound + (1L << (magnitude - SUB_BUCKET_BITS)) - 1;
+  }
+
+  /**
+   * Class representing the distribution recorded by a Histogram at a given time.
+   */
+  public static final class Snapshot {
+
+    private long[] counts;
+    private long count, sum, max;
+
+    private Snapshot(long[] counts, long count, long sum, long max) {
+      this.counts = counts;
+      this.count = count;
+      this.sum = sum;
+      this.max = max;
+    }
+
+    /**
+     * Gets the number of recorded values.
+     *
+     * @return the number of values.
+     */
+    public long getCount() {
+      return count;
+    }
+
+    /**
+     * Gets the sum of the recorded values.
+     *
+     * @return the sum.
+     */
+    public long getSum() {
+      return sum;
+    }
+
+    /**
+     * Gets the mean of the recorded values.
+     *
+     * @return the mean, 0 if no value was recorded.
+     */
+    public double getMean() {
+      return count == 0 ? 0 : (double)sum / count;
+    }
+
+    /**
+     * Gets the highest recorded value.
+     *
+     * @return the highest value, 0 if no value was recorded.
+     */
+    public long getMax() {
+      return max;
+    }
+
+    /**
+     * Gets the median of the recorded values.
+     *
+     * @return the median.
+     */
+    public long getP50() {
+      return getPercentile(50);
+    }
+
+    /**
+     * Gets the 99th percentile of the recorded values.
+     *
+     * @return the 99th percentile.
+     */
+    public long getP99() {
+      return getPercentile(99);
+    }
+
+    /**
+     * Gets the 99.9th percentile of the recorded values.
+     *
+     * @return the 99.9th percentile.
+     */
+    public long getP999() {
+      return getPercentile(99.9);
+    }
+
+    /**
+     * Gets a percentile of the recorded values, as the upper bound
+     * of the bucket it falls into, never above the highest recorded value.
+     *
+     * @param percentile the percentile, between 0 and 100.
+     * @return the percentile, 0 if no value was recorded.
+     */
+    public long getPercentile(double percentile) {
+      long total = 0;
+      for (long bucketCount : counts) {
+        total += bucketCount;
+      }
+      if(total == 0) return 0;
+      long rank = Math.max((long)Math.ceil(total * percentile / 100), 1);
+      long seen = 0;
+      for (int i = 0; i < counts.length; i++) {
+        seen += counts[i];
+        if(seen >= rank) return Math.min(upperBoundOf(i), max);
+      }
+      return max;
+    }
+
+    /**
+     * Gives a string representation of this snapshot.
+     *
+     * @return the string representation of this snapshot.
+     */
+    @Override
+    public String toString() {
+      return "count=" + count + " mean=" + Math.round(getMean()) +
+             " p50=" + getP50() + " p99=" + getP99() + " p999=" + getP999() + " max=" + max;
+    }
+  }
+}
@@ -0,0 +1,164 @@
+/**
+ * Package containing the metrics of the Board application.
+ */
+package board.metrics;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Registry of the metrics of the Board application.
+ * Metrics are created on first use and live as long as the application;
+ * the instrumented code keeps them in static fields, so that recording
+ * costs no lookup.
+ * Latencies are recorded in nanoseconds, in histograms named after the operation.
+ */
+public final class Metrics implements MetricsMXBean {
+
+  /**
+   * Name of the system property holding the file the snapshots are exported to.
+   */
+  public static final String FILE_PROPERTY = "board.metrics.file";
+
+  /**
+   * Seconds between two snapshots exported to the file.
+   */
+  public static final int EXPORT_PERIOD = 60;
+
+  private static final Metrics registry = new Metrics();
+
+  private ConcurrentHashMap<String, Counter> counters = new ConcurrentHashMap<>();
+  private ConcurrentHashMap<String, Histogram> histograms = new ConcurrentHashMap<>();
+  private boolean exporting;
+
+  private Metrics() {}
+
+  /**
+   * Gets the counter of a given name, creating it if needed.
+   *
+   * @param name the name of the counter.
+   * @return the counter.
+   */
+  public static Counter counter(String name) {
+    return registry.counters.computeIfAbsent(name, n -> new Counter());
+  }
+
+  /**
+   * Gets the histogram of a given name, creating it if needed.
+   *
+   * @param name the name of the histogram.
+   * @return the histogram.
+   */
+  public static Histogram histogram(String name) {
+    return registry.histograms.computeIfAbsent(name, n -> new Histogram());
+  }
+
+  /**
+   * Gets the registry of the metrics.
+   *
+   * @return the registry.
+   */
+  public static Metrics getRegistry() {
+    return registry;
+  }
+
+  /**
+   * Gets the current value of every counter.
+   *
+   * @return the values by counter name.
+   */
+  @Override
+  public Map<String, Long> getCounters() {
+    Map<String, Long> values = new TreeMap<>();
+    counters.forEach((name, counter) -> values.put(name, counter.get()));
+    return values;
+  }
+
+  /**
+   * Gets a snapshot of every histogram.
+   *
+   * @return the snapshots by histogram name.
+   */
+  @Override
+  public Map<String, Histogram.Snapshot> getHistograms() {
+    Map<String, Histogram.Snapshot> snapshots = new TreeMap<>();
+    histograms.forEach((name, histogram) -> snapshots.put(name, histogram.snapshot()));
+    return snapshots;
+  }
+
+  /**
+   * Gives a text snapshot of every metric, one per line.
+   *
+   * @return the snapshot.
+   */
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder("# ").append(Instant.now()).append('\n');
+    getCounters().forEach((name, value) ->
+      builder.append(name).append(' ').append(value).append('\n'));
+    getHistograms().forEach((name, snapshot) ->
+      builder.append(name).append(' ').append(snapshot).append('\n'));
+    return builder.toString();
+  }
+
+  /**
+   * Writes a snapshot of every metric to a file.
+   * The snapshot replaces the file atomically, so readers never see it half written.
+   *
+   * @param path the file.
+   * @throws IOException if the file cannot be written.
+   */
+  public void writeSnapshot(Path path) throws IOException {
+    Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+    Files.write(temporary, toString().getBytes(StandardCharsets.UTF_8));
+    Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Starts exporting the metrics: registers the registry with the platform
+   * MBean server and, if the FILE_PROPERTY system property is set,
+   * writes a snapshot to that file every EXPORT_PERIOD seconds.
+   * Export failures are ignored, the metrics being recorded anyway.
+   */
+  public static synchronized void startExport() {
+    if(registry.exporting) return;
+    registry.exporting = true;
+    try {
+      ObjectName name = new ObjectName("board:type=Metrics");
+      if(!ManagementFactory.getPlatformMBeanServer().isRegistered(name))
+        ManagementFactory.getPlatformMBeanServer().registerMBean(registry, name);
+    } catch (JMException e) {
+      // The metrics are still exported to the file, if any
+    }
+    String file = System.getProperty(FILE_PROPERTY);
+    if(file == null) return;
+    Path path = Paths.get(file);
+    ScheduledExecutorService exporter = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread thread = new Thread(r, "Metrics exporter");
+      thread.setDaemon(true);
+      return thread;
+    });
+    exporter.scheduleWithFixedDelay(() -> {
+      try {
+        registry.writeSnapshot(path);
+      } catch (IOException e) {
+        // The snapshot is written again at the next period
+      }
+    }, EXPORT_PERIOD, EXPORT_PERIOD, TimeUnit.SECONDS);
+  }
+}
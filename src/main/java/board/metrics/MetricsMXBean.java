@@ -0,0 +1,27 @@
+/**
+ * Package containing the metrics of the Board application.
+ */
+package board.metrics;
+
+import java.util.Map;
+
+/**
+ * Management interface of the metrics of the Board application,
+ * registered as "board:type=Metrics".
+ */
+public interface MetricsMXBean {
+
+  /**
+   * Gets the current value of every counter.
+   *
+   * @return the values by counter name.
+   */
+  Map<String, Long> getCounters();
+
+  /**
+   * Gets a snapshot of every histogram.
+   *
+   * @return the snapshots by histogram name.
+   */
+  Map<String, Histogram.Snapshot> getHistograms();
+}
@@ -3,7 +3,10 @@
  */
 package board.objects;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.temporal.ChronoUnit;
 import java.util.Arrays;
 import java.util.Objects;
@@ -37,7 +40,7 @@ public class Ad {
   private AdType type;
   private String username, description;
   private String[] keywords;
-  private LocalDateTime expirationDate;
+  private long expiration;
   private double price;
 
   /**
@@ -62,10 +65,53 @@ public class Ad {
     this.type = type;
     this.description = description;
     this.keywords = keywords.trim().split("\\s*,\\s*");
-    this.expirationDate = LocalDateTime.now().plusDays(days + 1);
+    this.expiration = Instant.now().plus(Duration.ofDays(days + 1)).getEpochSecond();
     this.price = price;
   }
 
+  /*
+   * Trusted constructor, keeping the given keywords and expiration as they are.
+   */
+  private Ad(
+    String username,
+    AdType type,
+    String description,
+    String[] keywords,
+    long expiration,
+    double price
+  ) {
+    this.username = username;
+    this.type = type;
+    this.description = description;
+    this.keywords = keywords;
+    this.expiration = expiration;
+    this.price = price;
+  }
+
+  /**
+   * Creates an Ad from fields that have already been parsed,
+   * such as the ones read back from an AdDatabase: the keywords are not split again
+   * and the expiration is kept as it was stored, rather than recomputed from days.
+   * 
+   * @param username owner of the Ad.
+   * @param type type of the Ad.
+   * @param description description of the Ad.
+   * @param keywords Keywords of the Ad, owned by the new Ad from now on.
+   * @param expiration expiration date of the Ad in epoch seconds.
+   * @param price price of the object that the Ad is about.
+   * @return the new Ad.
+   */
+  static Ad trusted(
+    String username,
+    AdType type,
+    String description,
+    String[] keywords,
+    long expiration,
+    double price
+  ) {
+    return new Ad(username, type, description, keywords, expiration, price);
+  }
+
   /**
    * Gets the username of the owner of this ad.
    * 
@@ -111,13 +157,42 @@ public class Ad {
     return price;
   }
 
+  /**
+   * Gets the expiration date of this ad.
+   * 
+   * @return the expiration date of this ad in epoch seconds.
+   */
+  public long getExpiration() {
+    return expiration;
+  }
+
+  /**
+   * Gets the expiration date of this ad.
+   * 
+   * @return the expiration date of this ad in the local time zone.
+   */
+  public LocalDateTime getExpirationDate() {
+    return LocalDateTime.ofInstant(Instant.ofEpochSecond(expiration), ZoneId.systemDefault());
+  }
+
   /**
    * Checks if this ad has expired.
    * 
    * @return true if expired.
    */
   public boolean hasExpired() {
-    return this.expirationDate.compareTo(LocalDateTime.now()) < 0 ? true : false;
+    return hasExpired(Instant.now().getEpochSecond());
+  }
+
+  /**
+   * Checks if this ad has expired at a given time, so that a scan
+   * can read the clock once for every ad.
+   * 
+   * @param now the time in epoch seconds.
+   * @return true if expired.
+   */
+  public boolean hasExpired(long now) {
+    return expiration < now;
   }
 
   /**
@@ -126,7 +201,7 @@ public class Ad {
    * @return the remaining days.
    */
   public long getRemainingDays() {
-    return ChronoUnit.DAYS.between(LocalDateTime.now(), this.expirationDate);
+    return ChronoUnit.DAYS.between(Instant.now(), Instant.ofEpochSecond(expiration));
   }
 
   /**
@@ -140,7 +215,7 @@ public class Ad {
            "\nType: " + type +
            "\nDescription: " + description +
            "\nKeywords: " + Arrays.toString(keywords) +
-           "\nExpiration: " + expirationDate +
+           "\nExpiration: " + getExpirationDate() +
            "\nPrice: " + price;
   }
 
@@ -169,6 +244,6 @@ public class Ad {
    */
   @Override
   public int hashCode() {
-    return Objects.hash(username, type, description, keywords, price);
+    return Objects.hash(username, type, description, Arrays.hashCode(keywords), price);
   }
 }
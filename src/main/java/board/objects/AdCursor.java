@@ -0,0 +1,29 @@
+/**
+ * Package containing the fundamental objects of the Board application.
+ */
+package board.objects;
+
+import java.util.List;
+
+/**
+ * Interface representing a sequence of ads fetched in windows,
+ * so that its reader never needs to hold the whole sequence.
+ */
+public interface AdCursor {
+
+  /**
+   * Gets the number of ads in the sequence.
+   *
+   * @return the number of ads.
+   */
+  int size();
+
+  /**
+   * Fetches a window of the sequence.
+   *
+   * @param offset the index of the first ad of the window.
+   * @param limit the maximum number of ads in the window.
+   * @return the ads of the window, fewer than limit at the end of the sequence.
+   */
+  List<Ad> fetch(int offset, int limit);
+}
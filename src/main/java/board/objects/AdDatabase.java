@@ -3,21 +3,106 @@
  */
 package board.objects;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
-import board.objects.Ad.AdType;
+import board.metrics.Counter;
+import board.metrics.Histogram;
+import board.metrics.Metrics;
 
 /**
  * Class representing an ad database.
+ * The database file is an append-only log of binary records
+ * (see AdRecordWriter): removals are appended as
+ * tombstone records and the log is compacted in background once
+ * the ratio of dead records grows past COMPACTION_THRESHOLD.
+ * Expired ads are evicted in background as soon as they expire:
+ * they need no tombstone since they are skipped when the log is replayed.
+ * The records of concurrent registrations and removals are appended
+ * together through the LogWriter of the database.
+ * Queries run in parallel under the read lock of the resident ads,
+ * while registrations and removals are serialized per ad on lock stripes
+ * and hold the write lock of the resident ads only to apply their change:
+ * the records are written and waited for out of it.
+ * The evictions and the compactions run on a scheduler shared by every AdDatabase,
+ * so a database must be closed once done with it to cancel them.
+ * Other AdDatabase objects, in this or other processes, may share the file:
+ * before each change or query, if the file changed, the records they appended
+ * are replayed holding the lock of the file.
  */
 @SuppressWarnings("serial")
 public class AdDatabase extends Database {
 
+  /**
+   * Ratio of dead records over the log size that triggers a compaction.
+   */
+  public static final double COMPACTION_THRESHOLD = 0.5;
+
+  /**
+   * Minimum number of records in the log before a compaction is considered.
+   */
+  public static final int COMPACTION_MIN_RECORDS = 64;
+
+  private static final int LOCK_STRIPES = 16;
+
+  private static final Histogram REGISTER_LATENCY = Metrics.histogram("ad.register");
+  private static final Histogram REMOVE_LATENCY = Metrics.histogram("ad.remove");
+  private static final Histogram EXPIRY_SWEEP_LATENCY = Metrics.histogram("ad.expirySweep");
+  private static final Counter EXPIRED_ADS = Metrics.counter("ad.expired");
+  private static final Histogram MATCH_LATENCY = Metrics.histogram("ad.match");
+  private static final Histogram SCAN_RECORDS = Metrics.histogram("ad.scan.records");
+  private static final Histogram SCAN_BYTES = Metrics.histogram("ad.scan.bytes");
+  private static final Counter CATCH_UP_FAILURES = Metrics.counter("ad.catchUp.failures");
+
+  private static final ScheduledExecutorService scheduler =
+    Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread thread = new Thread(r, "AdDatabase scheduler");
+      thread.setDaemon(true);
+      return thread;
+    });
+
+  private AdStore adStore = new AdStore();
+  private volatile int logRecords = 0;
+  private int evictedAds = 0;
+  private boolean closed = false;
+  private Future<?> compactionTask;
+  private ScheduledFuture<?> expiryTask;
+  private long scheduledExpiration;
+  private ReentrantReadWriteLock storeLock = new ReentrantReadWriteLock();
+  private ReentrantLock[] stripes = new ReentrantLock[LOCK_STRIPES];
+  private volatile Object loadedFileKey;
+  private volatile long loadedLength = -1;
+  private HashMap<Long, Long> ownBatches = new HashMap<>();
+
   /**
    * One-argument constructor.
    * 
@@ -27,11 +112,21 @@ public class AdDatabase extends Database {
    * or for some other reason cannot be opened for reading.
    * @throws IOException if the file exists but is a directory rather than a regular file,
    * does not exist but cannot be created, or cannot be opened for any other reason.
+   * If the file is in the former text format and cannot be migrated.
    */
   public AdDatabase(String filePath)
   throws FileNotFoundException, IOException {
     super(filePath);
-    removeExpiredAds();
+    for (int i = 0; i < stripes.length; i++) {
+      stripes[i] = new ReentrantLock();
+    }
+    getDatabaseLock().lock();
+    try {
+      AdDatabaseMigrator.migrate(this);
+    } finally {
+      getDatabaseLock().unlock();
+    }
+    loadAds();
   }
 
   /**
@@ -39,17 +134,17 @@ public class AdDatabase extends Database {
    * 
    * @param obj object that needs to be checked.
    * @return true if contained.
-   * @throws FileNotFoundException if the file does not exist,
-   * is a directory rather than a regular file,
-   * or for some other reason cannot be opened for reading.
+   * @throws UncheckedIOException if the records appended by someone else cannot be read.
    */
   @Override
-  public boolean containsEntry(Object ad)
-  throws FileNotFoundException {
-    AdDatabase.Iterator iterator = this.new Iterator();
-    while(iterator.hasNext())
-      if(iterator.getNext().equals(ad)) return true;
-    return false;
+  public boolean containsEntry(Object ad) {
+    catchUp();
+    storeLock.readLock().lock();
+    try {
+      return ad instanceof Ad && adStore.contains((Ad)ad);
+    } finally {
+      storeLock.readLock().unlock();
+    }
   }
 
   /**
@@ -66,57 +161,301 @@ public class AdDatabase extends Database {
   @Override
   public void registerEntry(Object ad)
   throws IllegalArgumentException, FileNotFoundException, IOException {
-    if(containsEntry(ad))
-      throw new IllegalArgumentException("Ad already contained");
-    else
-      addEntry(ad);
+    long start = System.nanoTime();
+    Ad newAd = (Ad)ad;
+    byte[] record = encodeRecord(AdRecordWriter.AD, newAd);
+    ReentrantLock stripe = stripeOf(newAd);
+    stripe.lock();
+    try {
+      refreshIfChanged();
+      LogWriter.Ticket ticket;
+      storeLock.writeLock().lock();
+      try {
+        if(adStore.contains(newAd))
+          throw new IllegalArgumentException("Ad already contained");
+        ticket = submitEntry(record);
+        adStore.add(newAd);
+        scheduleExpiry();
+      } finally {
+        storeLock.writeLock().unlock();
+      }
+      try {
+        awaitEntry(ticket);
+      } catch (IOException e) {
+        storeLock.writeLock().lock();
+        try {
+          adStore.remove(newAd);
+        } finally {
+          storeLock.writeLock().unlock();
+        }
+        throw e;
+      }
+    } finally {
+      stripe.unlock();
+      REGISTER_LATENCY.recordSince(start);
+    }
+  }
+
+  /**
+   * Gets every ad contained in the database.
+   * 
+   * @return the list of ads.
+   * @throws UncheckedIOException if the records appended by someone else cannot be read.
+   */
+  public List<Ad> getAds() {
+    catchUp();
+    storeLock.readLock().lock();
+    try {
+      return adStore.getAds();
+    } finally {
+      storeLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Gets a Stream over the ads contained in the database.
+   * 
+   * @return the Stream of ads.
+   * @throws UncheckedIOException if the records appended by someone else cannot be read.
+   */
+  public Stream<Ad> stream() {
+    return getAds().stream();
+  }
+
+  /**
+   * Gets a Spliterator over the live ads of the database file, read from disk
+   * rather than from the resident ads, whose chunks can be parsed in parallel.
+   * The Spliterator holds a mapping of the file as it is when called.
+   * 
+   * @return the Spliterator of ads.
+   * @throws FileNotFoundException if the file does not exist,
+   * is a directory rather than a regular file,
+   * or for some other reason cannot be opened for reading.
+   * @throws IOException if the file cannot be mapped in memory
+   * or is not a binary ad database.
+   */
+  public Spliterator<Ad> spliterator() throws FileNotFoundException, IOException {
+    getDatabaseLock().lock();
+    try {
+      return AdSpliterator.of(map(), Instant.now().getEpochSecond());
+    } finally {
+      getDatabaseLock().unlock();
+    }
+  }
+
+  /**
+   * Scans the live ads of the database file in parallel on the common ForkJoinPool.
+   * 
+   * @return the parallel Stream of ads, in the order of the file.
+   * @throws FileNotFoundException if the file does not exist,
+   * is a directory rather than a regular file,
+   * or for some other reason cannot be opened for reading.
+   * @throws IOException if the file cannot be mapped in memory
+   * or is not a binary ad database.
+   */
+  public Stream<Ad> scan() throws FileNotFoundException, IOException {
+    return StreamSupport.stream(spliterator(), true);
+  }
+
+  /**
+   * Gets the ads owned by a given user.
+   * 
+   * @param username the owner of the ads.
+   * @return the list of ads owned by the user.
+   * @throws UncheckedIOException if the records appended by someone else cannot be read.
+   */
+  public List<Ad> getAdsOf(String username) {
+    catchUp();
+    storeLock.readLock().lock();
+    try {
+      return adStore.getAdsOf(username);
+    } finally {
+      storeLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Gets the ads of the other users that best match the ads of a given user.
+   * Two ads match if they are of opposite type and share at least a keyword,
+   * regardless of its case, and they are ranked by the overlap of their keywords.
+   * 
+   * @param username the user whose ads are matched.
+   * @param maxMatches the maximum number of matches to be returned.
+   * @return the list of matches, sorted by decreasing score.
+   * @throws UncheckedIOException if the records appended by someone else cannot be read.
+   */
+  public List<AdMatch> getMatchesOf(String username, int maxMatches) {
+    return getMatchesOf(username, maxMatches, ProgressListener.NONE);
+  }
+
+  /**
+   * Gets the ads of the other users that best match the ads of a given user,
+   * reporting the progress of the matching.
+   * The matching is given up if the thread running it is interrupted.
+   * 
+   * @param username the user whose ads are matched.
+   * @param maxMatches the maximum number of matches to be returned.
+   * @param progress the listener to the progress of the matching.
+   * @return the list of matches, sorted by decreasing score.
+   * @throws CancellationException if the thread running the matching is interrupted.
+   * @throws UncheckedIOException if the records appended by someone else cannot be read.
+   */
+  public List<AdMatch> getMatchesOf(String username, int maxMatches, ProgressListener progress)
+  throws CancellationException {
+    long start = System.nanoTime();
+    catchUp();
+    storeLock.readLock().lock();
+    try {
+      return adStore.getMatchesOf(username, maxMatches, progress);
+    } finally {
+      storeLock.readLock().unlock();
+      MATCH_LATENCY.recordSince(start);
+    }
+  }
+
+  /**
+   * Gets a cursor over every match of the ads of a given user, best first.
+   * The matches are ranked once, when the cursor is created, so the cursor is
+   * a snapshot of them that later changes to the database do not affect.
+   * Its reader fetches a window at a time, but the cursor itself holds
+   * a reference to every matched ad: its footprint is one reference per match,
+   * on top of the resident ads, while the scores are dropped once ranked.
+   * 
+   * @param username the user whose ads are matched.
+   * @param progress the listener to the progress of the matching.
+   * @return the cursor over the matched ads.
+   * @throws CancellationException if the thread running the matching is interrupted.
+   * @throws UncheckedIOException if the records appended by someone else cannot be read.
+   */
+  public AdCursor getMatchCursor(String username, ProgressListener progress)
+  throws CancellationException {
+    List<AdMatch> matches = getMatchesOf(username, Integer.MAX_VALUE, progress);
+    Ad[] matchedAds = new Ad[matches.size()];
+    for (int i = 0; i < matchedAds.length; i++) {
+      matchedAds[i] = matches.get(i).getAd();
+    }
+    return new AdCursor() {
+      @Override
+      public int size() {
+        return matchedAds.length;
+      }
+
+      @Override
+      public List<Ad> fetch(int offset, int limit) {
+        int end = (int)Math.min((long)offset + limit, matchedAds.length);
+        List<Ad> ads = new ArrayList<>(Math.max(end - offset, 0));
+        for (int i = offset; i < end; i++) {
+          ads.add(matchedAds[i]);
+        }
+        return ads;
+      }
+    };
   }
 
   /**
-   * Iterator.
+   * Iterator over the records of the database log.
+   * A record either adds an ad or, if it is a tombstone,
+   * removes the ad added by an earlier record.
+   * The records are read from a memory mapping of the database file.
    */
   public class Iterator extends Database.Iterator<Ad> {
 
+    private AdRecordReader reader;
+    private int records;
+    private AdScan scan = new AdScan();
+
     /**
      * Constructor.
      * 
      * @throws FileNotFoundException if the file does not exist,
      * is a directory rather than a regular file,
      * or for some other reason cannot be opened for reading.
+     * @throws IOException if the file cannot be mapped in memory
+     * or is not a binary ad database.
      */
-    public Iterator() throws FileNotFoundException {
+    public Iterator() throws FileNotFoundException, IOException {
       super();
+      reader = new AdRecordReader(getBuffer());
+      scan.begin();
     }
 
     /**
-     * Gets the next ad in the database.
-     *
-     * @return the next ad in the database.
+     * Checks if the database has another record ready to be read.
+     * 
+     * @return true if another record is present.
+     */
+    @Override
+    public boolean hasNext() {
+      return getReader().hasNext();
+    }
+
+    /**
+     * Gets the ad carried by the next record in the database.
+     * 
+     * @return the ad carried by the next record in the database.
+     * @throws UncheckedIOException if the record is truncated.
      */
     @Override
     public Ad getNext() {
-      String username = getNextLine();
-      String type = getNextLine();
-      String description = getNextLine();
-      String keywords = getNextLine();
-      String days = getNextLine();
-      String price = getNextLine();
-      return new Ad(
-        username.substring(username.indexOf(" ") + 1),
-        AdType.parse(type.substring(type.indexOf(" ") + 1)),
-        description.substring(description.indexOf(" ") + 1),
-        keywords.substring(keywords.indexOf("[") + 1, keywords.indexOf("]")),
-        ChronoUnit.DAYS.between(
-          LocalDateTime.now(),
-          LocalDateTime.parse(days.substring(days.indexOf(" ") + 1))
-        ),
-        Double.parseDouble(price.substring(price.indexOf(" ") + 1))
-      );
+      try {
+        return nextRecord().getAd();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    /**
+     * Moves to the next record in the database without decoding its ad.
+     * The returned reader is the same for every record: the fields of the record
+     * are read from it in place, and its ad is decoded only if getAd() is called.
+     * 
+     * @return the reader positioned on the record.
+     * @throws UncheckedIOException if the record is truncated.
+     */
+    public AdRecordReader nextRecord() {
+      try {
+        getReader().nextRecord();
+        records++;
+        return getReader();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    /**
+     * Checks if the last record returned by getNext() is a tombstone.
+     * 
+     * @return true if the record removes its ad from the database.
+     */
+    public boolean isTombstone() {
+      return getReader().isTombstone();
+    }
+
+    /**
+     * Releases the mapping of the database file.
+     */
+    @Override
+    public void close() {
+      if(reader != null) {
+        SCAN_RECORDS.record(records);
+        SCAN_BYTES.record(reader.getPosition());
+        scan.kind = "iterator";
+        scan.records = records;
+        scan.bytes = reader.getPosition();
+        scan.commit();
+      }
+      super.close();
+      reader = null;
+    }
+
+    private AdRecordReader getReader() {
+      if(reader == null) throw new IllegalStateException("Iterator closed");
+      return reader;
     }
   }
 
   /**
-   * Removes an ad from the database.
+   * Removes an ad from the database by appending a tombstone to its log.
    * 
    * @param adToBeRemoved the ad to be removed.
    * @return true if removed.
@@ -128,47 +467,422 @@ public class AdDatabase extends Database {
    */
   public boolean removeAd(Ad adToBeRemoved)
   throws FileNotFoundException, IOException {
-    AdDatabase.Iterator iterator = this.new Iterator();
-    ArrayList<Ad> adList = new ArrayList<>();
-    while(iterator.hasNext()) {
-      adList.add(iterator.getNext());
-    }
-    clearDatabase();
-    boolean removed = adList.remove(adToBeRemoved);
-    for (Ad ad : adList) {
-      addEntry(ad);
+    long start = System.nanoTime();
+    byte[] record = encodeRecord(AdRecordWriter.TOMBSTONE, adToBeRemoved);
+    ReentrantLock stripe = stripeOf(adToBeRemoved);
+    stripe.lock();
+    try {
+      refreshIfChanged();
+      LogWriter.Ticket ticket;
+      storeLock.writeLock().lock();
+      try {
+        if(!adStore.contains(adToBeRemoved)) return false;
+        ticket = submitEntry(record);
+        adStore.remove(adToBeRemoved);
+      } finally {
+        storeLock.writeLock().unlock();
+      }
+      try {
+        awaitEntry(ticket);
+      } catch (IOException e) {
+        storeLock.writeLock().lock();
+        try {
+          adStore.add(adToBeRemoved);
+          scheduleExpiry();
+        } finally {
+          storeLock.writeLock().unlock();
+        }
+        throw e;
+      }
+    } finally {
+      stripe.unlock();
+      REMOVE_LATENCY.recordSince(start);
     }
-    return removed;
+    scheduleCompaction();
+    return true;
   }
 
   /**
    * Deletes the content of the database.
+   * The emptied log atomically replaces the database file,
+   * so the other objects sharing the file reload it.
    * 
    * @throws FileNotFoundException If the given file object does not denote an existing,
    * writable regular file and a new regular file of that name cannot be created,
    * or if some other error occurs while opening or creating the file.
+   * @throws IOException if the header of the database cannot be written.
    */
-  public void clearDatabase() throws FileNotFoundException {
-    new PrintWriter(this).close();
+  public void clearDatabase() throws FileNotFoundException, IOException {
+    storeLock.writeLock().lock();
+    try {
+      flushEntries();
+      getDatabaseLock().lock();
+      try {
+        rewrite(Collections.emptyList(), "clear");
+        adStore.clear();
+        logRecords = 0;
+      } finally {
+        getDatabaseLock().unlock();
+      }
+    } finally {
+      storeLock.writeLock().unlock();
+    }
   }
 
   /**
-   * Removes the expired ads.
+   * Rewrites the log keeping only the live ads, which are not expired.
+   * The compacted log is written to a temporary file that atomically
+   * replaces the database file, so a crash never leaves it truncated.
+   * The records still queued are written to the old log first,
+   * and the records appended by the other objects sharing the file
+   * are replayed before it is rewritten.
    * 
+   * @throws IOException if the temporary file cannot be written or moved.
+   */
+  public void compact() throws IOException {
+    storeLock.writeLock().lock();
+    try {
+      flushEntries();
+      getDatabaseLock().lock();
+      try {
+        refresh();
+        rewriteUnexpired(Instant.now().getEpochSecond());
+      } finally {
+        getDatabaseLock().unlock();
+      }
+    } finally {
+      storeLock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Removes the expired ads in bulk.
+   * The expired ads are found through the expiration queue of the store and,
+   * if any ad expired, the log is rewritten once without them, as by compact().
+   * The ads are removed from the store only once the log has been rewritten.
+   * The expired ads already evicted in background, whose records are
+   * still in the log, are removed by the sweep as well and counted in its report.
+   * 
+   * @return the report of the sweep.
    * @throws IOException if the file exists but is a directory rather than a regular file,
    * does not exist but cannot be created, or cannot be opened for any other reason.
-   * @throws FileNotFoundException if the file does not exist,
-   * is a directory rather than a regular file,
-   * or for some other reason cannot be opened for reading.
    */
-  private void removeExpiredAds()
-  throws IOException, FileNotFoundException {
-    AdDatabase.Iterator iterator = this.new Iterator();
-    while(iterator.hasNext()) {
-      Ad ad = iterator.getNext();
-      if(ad.hasExpired()) {
-        removeAd(ad);
+  public ExpirySweep removeExpiredAds() throws IOException {
+    long start = System.nanoTime();
+    int removedAds = 0;
+    storeLock.writeLock().lock();
+    try {
+      flushEntries();
+      getDatabaseLock().lock();
+      try {
+        refresh();
+        long now = Instant.now().getEpochSecond();
+        if(evictedAds > 0 || adStore.getNextExpiration() < now) {
+          int alreadyEvicted = evictedAds;
+          removedAds = alreadyEvicted + rewriteUnexpired(now).size();
+        }
+      } finally {
+        getDatabaseLock().unlock();
+      }
+    } finally {
+      storeLock.writeLock().unlock();
+      EXPIRY_SWEEP_LATENCY.recordSince(start);
+    }
+    EXPIRED_ADS.add(removedAds);
+    return new ExpirySweep(removedAds, System.nanoTime() - start);
+  }
+
+  /**
+   * Closes the database once done with it, cancelling its pending eviction
+   * and compaction; no eviction or compaction is scheduled any more.
+   * The records still queued are appended to the log.
+   * 
+   * @throws IOException if the queued records could not be written.
+   */
+  @Override
+  public void close() throws IOException {
+    storeLock.writeLock().lock();
+    try {
+      closed = true;
+      if(expiryTask != null) expiryTask.cancel(false);
+      if(compactionTask != null) compactionTask.cancel(false);
+      expiryTask = null;
+      compactionTask = null;
+    } finally {
+      storeLock.writeLock().unlock();
+    }
+    super.close();
+  }
+
+  /*
+   * Replays the database log once into the resident ad store.
+   */
+  private void loadAds() throws FileNotFoundException, IOException {
+    storeLock.writeLock().lock();
+    try {
+      refresh();
+      scheduleCompaction();
+      scheduleExpiry();
+    } finally {
+      storeLock.writeLock().unlock();
+    }
+  }
+
+  /*
+   * Replays the records appended to the log since it was last read, holding the lock
+   * of the file; the whole log is replayed again if the file was replaced by someone else.
+   * An incomplete record at the end of the log, left by a writer that crashed
+   * while appending it, is cut off so that the next records follow the last complete one.
+   * The records appended by this object were applied to the store when they were submitted
+   * and are not replayed: an ad removed since its record was appended would come back.
+   * Must be called holding the write lock of the store.
+   */
+  private void refresh() throws FileNotFoundException, IOException {
+    getDatabaseLock().lock();
+    try {
+      BasicFileAttributes attributes = Files.readAttributes(toPath(), BasicFileAttributes.class);
+      boolean replaced = !Objects.equals(attributes.fileKey(), loadedFileKey) ||
+        attributes.size() < loadedLength;
+      if(replaced) {
+        adStore.clear();
+        logRecords = 0;
+        evictedAds = 0;
+        ownBatches.clear();
+      } else if(attributes.size() == loadedLength) {
+        return;
+      }
+      replay(replaced ? 0 : loadedLength);
+      if(loadedLength < attributes.size()) truncate(loadedLength);
+      loadedFileKey = attributes.fileKey();
+    } finally {
+      getDatabaseLock().unlock();
+    }
+  }
+
+  /*
+   * Replays the log from a given record boundary.
+   * Expired ads are skipped from their expiration date alone, without decoding them.
+   * The whole log is parsed in parallel and only its live ads are added,
+   * in the order of the log, to the empty store.
+   * The replay stops at the last complete record, where the loaded log ends.
+   */
+  private void replay(long position) throws FileNotFoundException, IOException {
+    AdScan scan = new AdScan();
+    scan.begin();
+    long now = Instant.now().getEpochSecond();
+    int records = 0;
+    if(position == 0) {
+      AdSpliterator ads = AdSpliterator.of(map(), now);
+      StreamSupport.stream(ads, true).collect(Collectors.toList()).forEach(adStore::add);
+      records = ads.getRecords();
+      loadedLength = ads.getEnd();
+    } else {
+      AdRecordReader reader = new AdRecordReader(map());
+      reader.seek((int)position);
+      while(reader.hasNext()) {
+        Long ownBatchEnd = ownBatches.remove((long)reader.getPosition());
+        if(ownBatchEnd != null) {
+          reader.seek(ownBatchEnd.intValue());
+          continue;
+        }
+        reader.nextRecord();
+        if(reader.isTombstone())
+          adStore.remove(reader.getAd());
+        else if(!reader.hasExpired(now))
+          adStore.add(reader.getAd());
+        records++;
+      }
+      loadedLength = reader.getPosition();
+    }
+    logRecords += records;
+    SCAN_RECORDS.record(records);
+    SCAN_BYTES.record(loadedLength - position);
+    scan.kind = position == 0 ? "parallel replay" : "replay";
+    scan.records = records;
+    scan.bytes = loadedLength - position;
+    scan.commit();
+  }
+
+  /*
+   * Keeps the log loaded past the records appended by this object, which are already in the store,
+   * or remembers where they are if someone else appended records before them, to skip them on replay.
+   * Called holding the lock of the file.
+   */
+  @Override
+  void entriesAppended(Object fileKey, long offset, List<byte[]> entries) {
+    super.entriesAppended(fileKey, offset, entries);
+    if(!Objects.equals(fileKey, loadedFileKey)) return;
+    long end = offset;
+    for (byte[] entry : entries) {
+      end += entry.length;
+    }
+    if(offset == loadedLength)
+      loadedLength = end;
+    else
+      ownBatches.put(offset, end);
+    logRecords += entries.size();
+  }
+
+  /*
+   * Cuts the log to a given length.
+   * Must be called holding the lock of the file.
+   */
+  private void truncate(long length) throws IOException {
+    try (FileChannel channel = FileChannel.open(toPath(), StandardOpenOption.WRITE)) {
+      channel.truncate(length);
+    }
+  }
+
+  /*
+   * Catches up with the records appended by someone else before a query;
+   * if the records cannot be read, the failure is counted and thrown rather than querying stale ads.
+   */
+  private void catchUp() {
+    try {
+      refreshIfChanged();
+    } catch (IOException e) {
+      CATCH_UP_FAILURES.increment();
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /*
+   * Replays the records appended by someone else, if any.
+   * The check is a lookup of the file attributes, so the store is locked
+   * only if the log changed since it was last read.
+   */
+  private void refreshIfChanged() throws IOException {
+    BasicFileAttributes attributes = Files.readAttributes(toPath(), BasicFileAttributes.class);
+    if(Objects.equals(attributes.fileKey(), loadedFileKey) && attributes.size() == loadedLength)
+      return;
+    storeLock.writeLock().lock();
+    try {
+      refresh();
+      scheduleExpiry();
+    } finally {
+      storeLock.writeLock().unlock();
+    }
+  }
+
+  /*
+   * Replaces the log with one made of the given ads, for the given reason.
+   * Must be called holding the lock of the file.
+   */
+  private void rewrite(Collection<Ad> ads, String reason) throws IOException {
+    AdRewrite event = new AdRewrite();
+    event.begin();
+    File rewrittenFile = new File(getPath() + ".compact");
+    try (AdRecordWriter writer = new AdRecordWriter(
+      new BufferedOutputStream(new FileOutputStream(rewrittenFile))
+    )) {
+      writer.writeHeader();
+      for (Ad ad : ads) {
+        writer.write(ad);
+      }
+    }
+    Files.move(rewrittenFile.toPath(), toPath(),
+      StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    BasicFileAttributes attributes = Files.readAttributes(toPath(), BasicFileAttributes.class);
+    loadedFileKey = attributes.fileKey();
+    loadedLength = attributes.size();
+    evictedAds = 0;
+    ownBatches.clear();
+    event.reason = reason;
+    event.records = ads.size();
+    event.bytes = loadedLength;
+    event.commit();
+  }
+
+  /*
+   * Rewrites the log with the ads that are not expired at a given instant,
+   * then removes the expired ones from the store, which is left untouched if the rewrite fails.
+   * Returns the removed ads.
+   * Must be called holding the write lock of the store and the lock of the file.
+   */
+  private List<Ad> rewriteUnexpired(long now) throws IOException {
+    rewrite(adStore.getAds(now), "compact");
+    List<Ad> expiredAds = adStore.removeExpired(now);
+    logRecords = adStore.size();
+    return expiredAds;
+  }
+
+  private ReentrantLock stripeOf(Ad ad) {
+    return stripes[(ad.hashCode() & 0x7FFFFFFF) % stripes.length];
+  }
+
+  /*
+   * Encodes a single record of the database log.
+   */
+  private static byte[] encodeRecord(byte kind, Ad ad) throws IOException {
+    ByteArrayOutputStream record = new ByteArrayOutputStream(128);
+    try (AdRecordWriter writer = new AdRecordWriter(record)) {
+      if(kind == AdRecordWriter.TOMBSTONE)
+        writer.writeTombstone(ad);
+      else
+        writer.write(ad);
+    }
+    return record.toByteArray();
+  }
+
+  /*
+   * Schedules the eviction of the ads at the earliest expiration date in the store,
+   * unless an earlier eviction is already scheduled.
+   * Must be called holding the write lock of the store.
+   */
+  private void scheduleExpiry() {
+    long nextExpiration = adStore.getNextExpiration();
+    if(closed || nextExpiration == Long.MAX_VALUE) return;
+    if(expiryTask != null) {
+      if(nextExpiration >= scheduledExpiration) return;
+      expiryTask.cancel(false);
+    }
+    long delay = TimeUnit.SECONDS.toMillis(nextExpiration + 1) - System.currentTimeMillis();
+    scheduledExpiration = nextExpiration;
+    expiryTask = scheduler.schedule(this::evictExpiredAds, Math.max(delay, 0), TimeUnit.MILLISECONDS);
+  }
+
+  /*
+   * Evicts the ads that have expired and schedules the next eviction.
+   * Their records are left in the log until it is rewritten.
+   */
+  private void evictExpiredAds() {
+    storeLock.writeLock().lock();
+    try {
+      expiryTask = null;
+      evictedAds += adStore.removeExpired(Instant.now().getEpochSecond()).size();
+      scheduleCompaction();
+      scheduleExpiry();
+    } finally {
+      storeLock.writeLock().unlock();
+    }
+  }
+
+  /*
+   * Hands a compaction to the background compactor
+   * if the dead records of the log passed the threshold, unless the database is closed.
+   */
+  private void scheduleCompaction() {
+    storeLock.writeLock().lock();
+    try {
+      int deadRecords = logRecords - adStore.size();
+      boolean overThreshold =
+        logRecords >= COMPACTION_MIN_RECORDS &&
+        deadRecords > logRecords * COMPACTION_THRESHOLD;
+      if(overThreshold && compactionTask == null && !closed) {
+        compactionTask = scheduler.submit(() -> {
+          try {
+            compact();
+          } catch (IOException e) {
+            // The log is left as it is and the compaction is retried on a later removal
+          } finally {
+            storeLock.writeLock().lock();
+            compactionTask = null;
+            storeLock.writeLock().unlock();
+          }
+        });
       }
+    } finally {
+      storeLock.writeLock().unlock();
     }
   }
 }
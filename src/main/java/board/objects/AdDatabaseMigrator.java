@@ -0,0 +1,110 @@
+/**
+ * Package containing the fundamental objects of the Board application.
+ */
+package board.objects;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Objects;
+
+import board.objects.Ad.AdType;
+
+/**
+ * Class migrating an ad database from the former text format,
+ * six "Field: value" lines per ad and a "Removed" line before each tombstone,
+ * to the binary record format written by AdRecordWriter.
+ */
+public class AdDatabaseMigrator {
+
+  private AdDatabaseMigrator() {}
+
+  /**
+   * Checks if a database file starts with the header of the binary format.
+   * 
+   * @param file the database file.
+   * @return true if the file is in the binary format.
+   * @throws IOException if the file cannot be read.
+   */
+  public static boolean isBinary(File file) throws IOException {
+    byte[] header = new byte[AdRecordWriter.MAGIC.length];
+    try (InputStream in = new FileInputStream(file)) {
+      int read = 0, n;
+      while(read < header.length && (n = in.read(header, read, header.length - read)) != -1) {
+        read += n;
+      }
+      return read == header.length && Arrays.equals(header, AdRecordWriter.MAGIC);
+    }
+  }
+
+  /**
+   * Migrates a database file in the text format to the binary format.
+   * The binary file is written next to the text one and atomically replaces it;
+   * if the migration fails, it is deleted and the text file is left as it is.
+   * The expiration dates are carried over as they are.
+   * 
+   * @param file the database file.
+   * @return true if the file was migrated, false if it was already binary.
+   * @throws IOException if the file cannot be read, written or is malformed.
+   */
+  public static boolean migrate(File file) throws IOException {
+    if(isBinary(file)) return false;
+    File migratedFile = new File(file.getPath() + ".migrate");
+    try {
+      try (
+        BufferedReader bufferedReader = new BufferedReader(new FileReader(file));
+        AdRecordWriter writer = new AdRecordWriter(
+          new BufferedOutputStream(new FileOutputStream(migratedFile))
+        )
+      ) {
+        writer.writeHeader();
+        String line;
+        while((line = bufferedReader.readLine()) != null) {
+          boolean tombstone = Objects.equals(line, "Removed");
+          String username = tombstone ? bufferedReader.readLine() : line;
+          String type = bufferedReader.readLine();
+          String description = bufferedReader.readLine();
+          String keywords = bufferedReader.readLine();
+          String expiration = bufferedReader.readLine();
+          String price = bufferedReader.readLine();
+          if(price == null) throw new IOException("Truncated ad record in " + file);
+          try {
+            writer.write(
+              tombstone ? AdRecordWriter.TOMBSTONE : AdRecordWriter.AD,
+              AdType.parse(value(type)),
+              LocalDateTime.parse(value(expiration)).atZone(ZoneId.systemDefault()).toEpochSecond(),
+              Double.parseDouble(value(price)),
+              value(username),
+              value(description),
+              keywords.substring(keywords.indexOf("[") + 1, keywords.indexOf("]"))
+                .trim().split("\\s*,\\s*")
+            );
+          } catch (DateTimeException | IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new IOException("Malformed ad record in " + file, e);
+          }
+        }
+      }
+      Files.move(migratedFile.toPath(), file.toPath(),
+        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException | RuntimeException e) {
+      migratedFile.delete();
+      throw e;
+    }
+    return true;
+  }
+
+  private static String value(String line) {
+    return line.substring(line.indexOf(" ") + 1);
+  }
+}
@@ -0,0 +1,43 @@
+/**
+ * Package containing the fundamental objects of the Board application.
+ */
+package board.objects;
+
+/**
+ * Class representing an ad matching the ads of a user, with its score.
+ */
+public class AdMatch {
+
+  private Ad ad;
+  private double score;
+
+  /**
+   * Two-argument constructor.
+   * 
+   * @param ad the matching ad.
+   * @param score the Jaccard similarity between the keyword set of the matching ad
+   * and the keyword set of the ad it matched, between 0 and 1.
+   */
+  public AdMatch(Ad ad, double score) {
+    this.ad = ad;
+    this.score = score;
+  }
+
+  /**
+   * Gets the matching ad.
+   * 
+   * @return the matching ad.
+   */
+  public Ad getAd() {
+    return ad;
+  }
+
+  /**
+   * Gets the score of this match.
+   * 
+   * @return the score, 1 if the keyword sets are equal.
+   */
+  public double getScore() {
+    return score;
+  }
+}
@@ -0,0 +1,239 @@
+/**
+ * Package containing the fundamental objects of the Board application.
+ */
+package board.objects;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import board.objects.Ad.AdType;
+
+/**
+ * Class reading ads in the binary record format written by AdRecordWriter.
+ * Records are read from a buffer, typically mapping the database file:
+ * nextRecord() only reads the fixed-size fields of a record and its strings
+ * are decoded by getAd() on demand, so skipped records are never decoded.
+ * The reader is a flyweight over the current record: its type, price, expiration
+ * and owner can be tested straight from the buffer, so a scan filtering records
+ * allocates nothing for the records it rejects.
+ * Owners repeat across ads, so the owners read are interned
+ * in a pool local to the reader.
+ */
+public class AdRecordReader {
+
+  private static final AdType[] adTypes = AdType.values();
+
+  /*
+   * Length of the smallest record: kind, type, expiration, price,
+   * and the lengths of an empty owner and description and of no keywords.
+   */
+  private static final int MIN_RECORD = 2 * Byte.BYTES + Long.BYTES + Double.BYTES + 3 * Short.BYTES;
+
+  private ByteBuffer buffer;
+  private int recordEnd;
+  private int stringsStart;
+  private boolean tombstone;
+  private AdType type;
+  private long expiration;
+  private double price;
+  private byte[] stringBuffer = new byte[64];
+  private HashMap<String, String> stringPool = new HashMap<>();
+
+  /**
+   * One-argument constructor.
+   * 
+   * @param buffer the buffer the records are read from, starting with the header.
+   * @throws IOException if the buffer does not start with the header of an ad database.
+   */
+  public AdRecordReader(ByteBuffer buffer) throws IOException {
+    this.buffer = buffer;
+    byte[] header = new byte[AdRecordWriter.MAGIC.length];
+    if(buffer.remaining() < header.length)
+      throw new IOException("Not an ad database");
+    buffer.get(header);
+    if(!Arrays.equals(header, AdRecordWriter.MAGIC))
+      throw new IOException("Not an ad database");
+    recordEnd = buffer.position();
+  }
+
+  /*
+   * Reads the records from a given offset, known to be on a record boundary
+   * of a buffer whose header was already checked, up to the limit of the buffer.
+   */
+  AdRecordReader(ByteBuffer buffer, int position) {
+    this.buffer = buffer;
+    recordEnd = position;
+  }
+
+  /*
+   * Gets the offset the next record starts from.
+   */
+  int getPosition() {
+    return recordEnd;
+  }
+
+  /*
+   * Moves to the record starting from a given offset, known to be on a record boundary.
+   */
+  void seek(int position) {
+    recordEnd = position;
+  }
+
+  /**
+   * Checks if another record is ready to be read.
+   * An incomplete record at the end of the buffer, left by a writer
+   * that crashed while appending it, is not: the records end before it.
+   * 
+   * @return true if another record is present.
+   */
+  public boolean hasNext() {
+    int remaining = buffer.limit() - recordEnd;
+    return remaining >= Integer.BYTES && buffer.getInt(recordEnd) <= remaining - Integer.BYTES;
+  }
+
+  /**
+   * Reads the ad carried by the next record.
+   * 
+   * @return the ad carried by the next record.
+   * @throws IOException if the record is truncated.
+   */
+  public Ad next() throws IOException {
+    nextRecord();
+    return getAd();
+  }
+
+  /**
+   * Moves to the next record, reading only its fixed-size fields.
+   * 
+   * @throws IOException if the record is truncated,
+   * or if its length, kind or ad type are not valid.
+   */
+  public void nextRecord() throws IOException {
+    int limit = buffer.limit();
+    if(limit - recordEnd < Integer.BYTES)
+      throw new IOException("Truncated ad record at " + recordEnd);
+    int length = buffer.getInt(recordEnd);
+    if(length < MIN_RECORD)
+      throw new IOException("Malformed ad record at " + recordEnd + ": length " + length);
+    if(length > limit - recordEnd - Integer.BYTES)
+      throw new IOException("Truncated ad record at " + recordEnd);
+    int start = recordEnd + Integer.BYTES;
+    byte kind = buffer.get(start);
+    if(kind != AdRecordWriter.AD && kind != AdRecordWriter.TOMBSTONE)
+      throw new IOException("Malformed ad record at " + recordEnd + ": kind " + kind);
+    byte ordinal = buffer.get(start + Byte.BYTES);
+    if(ordinal < 0 || ordinal >= adTypes.length)
+      throw new IOException("Malformed ad record at " + recordEnd + ": ad type " + ordinal);
+    tombstone = kind == AdRecordWriter.TOMBSTONE;
+    type = adTypes[ordinal];
+    expiration = buffer.getLong(start + 2 * Byte.BYTES);
+    price = buffer.getDouble(start + 2 * Byte.BYTES + Long.BYTES);
+    stringsStart = start + 2 * Byte.BYTES + Long.BYTES + Double.BYTES;
+    recordEnd = start + length;
+  }
+
+  /**
+   * Checks if the current record is a tombstone.
+   * 
+   * @return true if the record removes its ad from the database.
+   */
+  public boolean isTombstone() {
+    return tombstone;
+  }
+
+  /**
+   * Gets the expiration date of the ad carried by the current record.
+   * 
+   * @return the expiration date in epoch seconds.
+   */
+  public long getExpiration() {
+    return expiration;
+  }
+
+  /**
+   * Checks if the ad carried by the current record has expired.
+   * 
+   * @param now the current time in epoch seconds, read once per scan.
+   * @return true if expired.
+   */
+  public boolean hasExpired(long now) {
+    return expiration < now;
+  }
+
+  /**
+   * Gets the type of the ad carried by the current record.
+   * 
+   * @return the type of the ad.
+   */
+  public AdType getType() {
+    return type;
+  }
+
+  /**
+   * Gets the price of the ad carried by the current record.
+   * 
+   * @return the price of the ad.
+   */
+  public double getPrice() {
+    return price;
+  }
+
+  /**
+   * Checks if the ad carried by the current record is owned by a given user,
+   * comparing the encoded owner in place, without decoding it.
+   * 
+   * @param username the UTF-8 encoding of the username, encoded once per scan.
+   * @return true if the ad is owned by the user.
+   */
+  public boolean isOwnedBy(byte[] username) {
+    int length = buffer.getShort(stringsStart) & 0xFFFF;
+    if(length != username.length) return false;
+    int start = stringsStart + Short.BYTES;
+    if(start + length > recordEnd) return false;
+    for (int i = 0; i < length; i++) {
+      if(buffer.get(start + i) != username[i]) return false;
+    }
+    return true;
+  }
+
+  /**
+   * Decodes the ad carried by the current record.
+   * The strings are read within the bounds of the record.
+   * 
+   * @return the ad carried by the current record.
+   * @throws IOException if the strings overrun the record or do not make a valid ad.
+   */
+  public Ad getAd() throws IOException {
+    int limit = buffer.limit();
+    try {
+      buffer.limit(recordEnd);
+      buffer.position(stringsStart);
+      String username = intern(readString());
+      String description = readString();
+      String[] keywords = new String[buffer.getShort() & 0xFFFF];
+      for (int i = 0; i < keywords.length; i++) {
+        keywords[i] = readString();
+      }
+      return Ad.trusted(username, type, description, keywords, expiration, price);
+    } catch (RuntimeException e) {
+      throw new IOException("Malformed ad record ending at " + recordEnd, e);
+    } finally {
+      buffer.limit(limit);
+    }
+  }
+
+  private String readString() {
+    int length = buffer.getShort() & 0xFFFF;
+    if(stringBuffer.length < length) stringBuffer = new byte[length];
+    buffer.get(stringBuffer, 0, length);
+    return new String(stringBuffer, 0, length, StandardCharsets.UTF_8);
+  }
+
+  private String intern(String string) {
+    String pooled = stringPool.putIfAbsent(string, string);
+    return pooled == null ? string : pooled;
+  }
+}
@@ -0,0 +1,162 @@
+/**
+ * Package containing the fundamental objects of the Board application.
+ */
+package board.objects;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import board.objects.Ad.AdType;
+
+/**
+ * Class writing ads in the binary record format of an AdDatabase.
+ * A database starts with the MAGIC header and is followed by records made of:
+ * the length of the rest of the record (int), the record kind (byte),
+ * the ordinal of the ad type (byte), the expiration date in epoch seconds (long),
+ * the price (double), the owner, the description, the number of keywords (short)
+ * and the keywords. Strings are written as their UTF-8 length (unsigned short)
+ * followed by their UTF-8 bytes.
+ */
+public class AdRecordWriter implements Closeable {
+
+  /**
+   * Header identifying a binary ad database.
+   */
+  public static final byte[] MAGIC = {'A', 'D', 'B', 1};
+
+  /**
+   * Kind of the records adding an ad.
+   */
+  public static final byte AD = 0;
+
+  /**
+   * Kind of the records removing an ad.
+   */
+  public static final byte TOMBSTONE = 1;
+
+  private DataOutputStream out;
+  private ByteArrayOutputStream recordBuffer = new ByteArrayOutputStream(128);
+  private DataOutputStream record = new DataOutputStream(recordBuffer);
+
+  /**
+   * One-argument constructor.
+   * 
+   * @param out the stream the records are written to.
+   */
+  public AdRecordWriter(OutputStream out) {
+    this.out = new DataOutputStream(out);
+  }
+
+  /**
+   * Writes the header of the database.
+   * 
+   * @throws IOException if an I/O error occurs.
+   */
+  public void writeHeader() throws IOException {
+    out.write(MAGIC);
+  }
+
+  /**
+   * Writes a record adding an ad.
+   * 
+   * @param ad the ad to be written.
+   * @throws IOException if an I/O error occurs or the ad does not fit in a record.
+   */
+  public void write(Ad ad) throws IOException {
+    write(AD, ad);
+  }
+
+  /**
+   * Writes a record removing an ad.
+   * 
+   * @param ad the ad to be removed.
+   * @throws IOException if an I/O error occurs or the ad does not fit in a record.
+   */
+  public void writeTombstone(Ad ad) throws IOException {
+    write(TOMBSTONE, ad);
+  }
+
+  /**
+   * Tells whether an ad fits in a record: it has at most 65535 keywords,
+   * and its username, description and keywords are at most 65535 bytes long in UTF-8.
+   * 
+   * @param ad the ad to be checked.
+   * @return true if the ad can be written, false otherwise.
+   */
+  public static boolean canWrite(Ad ad) {
+    if(ad.getKeywords().length > 0xFFFF
+      || !fits(ad.getUsername()) || !fits(ad.getDescription()))
+      return false;
+    for (String keyword : ad.getKeywords()) {
+      if(!fits(keyword)) return false;
+    }
+    return true;
+  }
+
+  /**
+   * Flushes and closes the underlying stream.
+   * 
+   * @throws IOException if an I/O error occurs.
+   */
+  @Override
+  public void close() throws IOException {
+    out.close();
+  }
+
+  /*
+   * Writes a record carrying the fields of an ad.
+   */
+  void write(
+    byte kind,
+    AdType type,
+    long expiration,
+    double price,
+    String username,
+    String description,
+    String[] keywords
+  ) throws IOException {
+    recordBuffer.reset();
+    record.writeByte(kind);
+    record.writeByte(type.ordinal());
+    record.writeLong(expiration);
+    record.writeDouble(price);
+    writeString(username);
+    writeString(description);
+    if(keywords.length > 0xFFFF)
+      throw new IOException("Too many keywords for an ad record");
+    record.writeShort(keywords.length);
+    for (String keyword : keywords) {
+      writeString(keyword);
+    }
+    out.writeInt(recordBuffer.size());
+    recordBuffer.writeTo(out);
+  }
+
+  private void write(byte kind, Ad ad) throws IOException {
+    write(
+      kind,
+      ad.getType(),
+      ad.getExpiration(),
+      ad.getPrice(),
+      ad.getUsername(),
+      ad.getDescription(),
+      ad.getKeywords()
+    );
+  }
+
+  private static boolean fits(String string) {
+    return string.getBytes(StandardCharsets.UTF_8).length <= 0xFFFF;
+  }
+
+  private void writeString(String string) throws IOException {
+    byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+    if(bytes.length > 0xFFFF)
+      throw new IOException("String too long for an ad record");
+    record.writeShort(bytes.length);
+    record.write(bytes);
+  }
+}
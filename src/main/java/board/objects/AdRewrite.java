@@ -0,0 +1,33 @@
+/**
+ * Package containing the fundamental objects of the Board application.
+ */
+package board.objects;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event of a rewrite of the ad log,
+ * when the database is cleared or compacted after removals and expirations.
+ */
+@Name("board.AdRewrite")
+@Label("Ad Rewrite")
+@Category({"Board", "Storage"})
+@Description("Rewrite of the ad log through a temporary file")
+class AdRewrite extends Event {
+
+  @Label("Reason")
+  @Description("clear or compact")
+  String reason;
+
+  @Label("Records")
+  int records;
+
+  @Label("Bytes")
+  @DataAmount
+  long bytes;
+}
@@ -0,0 +1,33 @@
+/**
+ * Package containing the fundamental objects of the Board application.
+ */
+package board.objects;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event of a scan of the ad log,
+ * either a replay into the resident ads or a pass of an AdDatabase.Iterator.
+ */
+@Name("board.AdScan")
+@Label("Ad Scan")
+@Category({"Board", "Storage"})
+@Description("Scan of the records of the ad log")
+class AdScan extends Event {
+
+  @Label("Kind")
+  @Description("replay, parallel replay or iterator")
+  String kind;
+
+  @Label("Records")
+  int records;
+
+  @Label("Bytes")
+  @DataAmount
+  long bytes;
+}
@@ -0,0 +1,146 @@
+/**
+ * Package containing the fundamental objects of the Board application.
+ */
+package board.objects;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Spliterator over the live ads of an ad log, splitting the log
+ * into chunks of records that are parsed in parallel.
+ * Records are length-prefixed, so the log is first walked from record to record
+ * reading only their lengths and kinds: the walk marks a chunk boundary every
+ * CHUNK_RECORDS records and decodes the tombstones, so that every chunk can then
+ * tell on its own whether an ad was removed by a later record.
+ * An ad is live if it is not expired and no tombstone follows its record.
+ * The Spliterator is ORDERED, in the order of the log, and splits
+ * until a single chunk is left, as long as it has not started traversing.
+ */
+public class AdSpliterator implements Spliterator<Ad> {
+
+  /**
+   * Number of records of a chunk, the smallest unit parsed by a single thread.
+   */
+  public static final int CHUNK_RECORDS = 1024;
+
+  private ByteBuffer buffer;
+  private int[] boundaries;
+  private Map<Ad, Integer> tombstones;
+  private long now;
+  private int first, last;
+  private int records;
+  private AdRecordReader reader;
+
+  private AdSpliterator(
+    ByteBuffer buffer, int[] boundaries, Map<Ad, Integer> tombstones, long now, int first, int last
+  ) {
+    this.buffer = buffer;
+    this.boundaries = boundaries;
+    this.tombstones = tombstones;
+    this.now = now;
+    this.first = first;
+    this.last = last;
+  }
+
+  /**
+   * Walks an ad log and creates a Spliterator over its live ads.
+   *
+   * @param buffer the buffer the log is read from, starting with the header;
+   * it must not be modified while the Spliterator is in use.
+   * @param now the time the ads expire against, in epoch seconds.
+   * @return the Spliterator, ending before the incomplete record the log may end with.
+   * @throws IOException if the buffer is not an ad log or a record is malformed.
+   */
+  public static AdSpliterator of(ByteBuffer buffer, long now) throws IOException {
+    AdRecordReader reader = new AdRecordReader(buffer);
+    int[] boundaries = new int[16];
+    int chunks = 0;
+    int records = 0;
+    Map<Ad, Integer> tombstones = new HashMap<>();
+    while(reader.hasNext()) {
+      int position = reader.getPosition();
+      if(records % CHUNK_RECORDS == 0) {
+        if(chunks == boundaries.length) boundaries = Arrays.copyOf(boundaries, chunks * 2);
+        boundaries[chunks++] = position;
+      }
+      reader.nextRecord();
+      if(reader.isTombstone()) tombstones.put(reader.getAd(), position);
+      records++;
+    }
+    boundaries = Arrays.copyOf(boundaries, chunks + 1);
+    boundaries[chunks] = reader.getPosition();
+    AdSpliterator ads = new AdSpliterator(buffer, boundaries, tombstones, now, 0, chunks);
+    ads.records = records;
+    return ads;
+  }
+
+  /**
+   * Gets the number of records of the log, including the tombstones and the expired ads.
+   * Only known to the Spliterator returned by of().
+   *
+   * @return the number of records.
+   */
+  public int getRecords() {
+    return records;
+  }
+
+  /**
+   * Gets the offset the log ends at, the offset of the next record to be appended,
+   * which is the end of its last complete record.
+   *
+   * @return the offset.
+   */
+  public int getEnd() {
+    return boundaries[boundaries.length - 1];
+  }
+
+  @Override
+  public boolean tryAdvance(Consumer<? super Ad> action) {
+    if(reader == null) {
+      ByteBuffer chunk = buffer.duplicate();
+      chunk.limit(boundaries[last]);
+      reader = new AdRecordReader(chunk, boundaries[first]);
+    }
+    try {
+      while(reader.hasNext()) {
+        int position = reader.getPosition();
+        reader.nextRecord();
+        if(reader.isTombstone() || reader.hasExpired(now)) continue;
+        Ad ad = reader.getAd();
+        Integer tombstone = tombstones.isEmpty() ? null : tombstones.get(ad);
+        if(tombstone != null && tombstone > position) continue;
+        action.accept(ad);
+        return true;
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return false;
+  }
+
+  @Override
+  public Spliterator<Ad> trySplit() {
+    if(reader != null || last - first < 2) return null;
+    int middle = (first + last) >>> 1;
+    AdSpliterator prefix = new AdSpliterator(buffer, boundaries, tombstones, now, first, middle);
+    first = middle;
+    return prefix;
+  }
+
+  @Override
+  public long estimateSize() {
+    return (long)(last - first) * CHUNK_RECORDS;
+  }
+
+  @Override
+  public int characteristics() {
+    return ORDERED | NONNULL | IMMUTABLE;
+  }
+}
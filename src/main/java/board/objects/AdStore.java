@@ -0,0 +1,170 @@
+/**
+ * Package containing the fundamental objects of the Board application.
+ */
+package board.objects;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Class representing the resident copy of the ads contained in an AdDatabase,
+ * indexed by ad, by owner, by keywords and by expiration date.
+ */
+class AdStore {
+
+  private LinkedHashMap<Ad, Ad> ads = new LinkedHashMap<>();
+  private HashMap<String, Set<Ad>> adsByOwner = new HashMap<>();
+  private KeywordIndex keywordIndex = new KeywordIndex();
+  private PriorityQueue<Ad> expirationQueue = new PriorityQueue<>(
+    Comparator.comparingLong(Ad::getExpiration)
+  );
+
+  /**
+   * Checks if the store contains a given ad.
+   * 
+   * @param ad the ad to be checked.
+   * @return true if contained.
+   */
+  public boolean contains(Ad ad) {
+    return ads.containsKey(ad);
+  }
+
+  /**
+   * Adds an ad to the store.
+   * 
+   * @param ad the ad to be added.
+   * @return true if the ad was not already contained.
+   */
+  public boolean add(Ad ad) {
+    if(ads.putIfAbsent(ad, ad) != null) return false;
+    adsByOwner.computeIfAbsent(ad.getUsername(), k -> new LinkedHashSet<>()).add(ad);
+    keywordIndex.add(ad);
+    expirationQueue.add(ad);
+    return true;
+  }
+
+  /**
+   * Removes an ad from the store.
+   * Its entry in the expiration queue is discarded lazily,
+   * when it reaches the head of the queue.
+   * 
+   * @param ad the ad to be removed.
+   * @return true if the ad was contained.
+   */
+  public boolean remove(Ad ad) {
+    if(ads.remove(ad) == null) return false;
+    Set<Ad> ownerAds = adsByOwner.get(ad.getUsername());
+    ownerAds.remove(ad);
+    if(ownerAds.isEmpty()) adsByOwner.remove(ad.getUsername());
+    keywordIndex.remove(ad);
+    if(expirationQueue.size() > 2 * ads.size() + 16) {
+      expirationQueue = new PriorityQueue<>(expirationQueue.comparator());
+      expirationQueue.addAll(ads.values());
+    }
+    return true;
+  }
+
+  /**
+   * Removes every ad from the store.
+   */
+  public void clear() {
+    ads.clear();
+    adsByOwner.clear();
+    keywordIndex.clear();
+    expirationQueue.clear();
+  }
+
+  /**
+   * Removes the ads that expired before a given instant.
+   * Only the expired ads are visited.
+   * 
+   * @param now the instant the expiration dates are compared with, in epoch seconds.
+   * @return the removed ads.
+   */
+  public List<Ad> removeExpired(long now) {
+    List<Ad> expiredAds = new ArrayList<>();
+    while(!expirationQueue.isEmpty() && expirationQueue.peek().hasExpired(now)) {
+      Ad ad = expirationQueue.poll();
+      if(ads.get(ad) == ad) {
+        remove(ad);
+        expiredAds.add(ad);
+      }
+    }
+    return expiredAds;
+  }
+
+  /**
+   * Gets the earliest expiration date among the ads in the store.
+   * 
+   * @return the earliest expiration date in epoch seconds, Long.MAX_VALUE if the store is empty.
+   */
+  public long getNextExpiration() {
+    while(!expirationQueue.isEmpty() && ads.get(expirationQueue.peek()) != expirationQueue.peek()) {
+      expirationQueue.poll();
+    }
+    return expirationQueue.isEmpty() ? Long.MAX_VALUE : expirationQueue.peek().getExpiration();
+  }
+
+  /**
+   * Gets the number of ads in the store.
+   * 
+   * @return the number of ads.
+   */
+  public int size() {
+    return ads.size();
+  }
+
+  /**
+   * Gets every ad in the store, in insertion order.
+   * 
+   * @return a copy of the ads in the store.
+   */
+  public List<Ad> getAds() {
+    return new ArrayList<>(ads.keySet());
+  }
+
+  /**
+   * Gets the ads in the store that have not expired at a given instant, in insertion order.
+   * 
+   * @param now the instant the expiration dates are compared with, in epoch seconds.
+   * @return a copy of the unexpired ads in the store.
+   */
+  public List<Ad> getAds(long now) {
+    List<Ad> unexpiredAds = new ArrayList<>(ads.size());
+    for (Ad ad : ads.keySet()) {
+      if(!ad.hasExpired(now)) unexpiredAds.add(ad);
+    }
+    return unexpiredAds;
+  }
+
+  /**
+   * Gets the ads owned by a given user, in insertion order.
+   * 
+   * @param username the owner of the ads.
+   * @return a copy of the ads owned by the user.
+   */
+  public List<Ad> getAdsOf(String username) {
+    Set<Ad> ownerAds = adsByOwner.get(username);
+    return ownerAds == null ? Collections.emptyList() : new ArrayList<>(ownerAds);
+  }
+
+  /**
+   * Gets the ads of the other users that best match the ads of a given user.
+   * 
+   * @param username the user whose ads are matched.
+   * @param maxMatches the maximum number of matches to be returned.
+   * @param progress the listener to the progress of the matching.
+   * @return the matches, sorted by decreasing score.
+   */
+  public List<AdMatch> getMatchesOf(String username, int maxMatches, ProgressListener progress) {
+    Set<Ad> ownerAds = adsByOwner.getOrDefault(username, Collections.emptySet());
+    return keywordIndex.rank(ownerAds, username, maxMatches, progress);
+  }
+}
@@ -3,10 +3,11 @@
  */
 package board.objects;
 
-import java.io.FileNotFoundException;
-import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 
 import javax.swing.DefaultCellEditor;
 import javax.swing.JComboBox;
@@ -14,10 +15,11 @@ import javax.swing.JTable;
 import javax.swing.event.ListSelectionEvent;
 import javax.swing.event.ListSelectionListener;
 import javax.swing.table.DefaultTableCellRenderer;
-import javax.swing.table.DefaultTableModel;
 import javax.swing.table.TableColumn;
 
 import board.Board;
+import board.metrics.Histogram;
+import board.metrics.Metrics;
 import board.objects.Ad.AdType;
 
 /**
@@ -26,14 +28,18 @@ import board.objects.Ad.AdType;
 @SuppressWarnings("serial")
 public class AdTable extends JTable {
 
+  /*
+   * Latency of the matches as seen by the user, from the request to the matches being shown,
+   * queueing on the worker and hop to the event dispatch thread included;
+   * the ranking alone is recorded by the AdDatabase as ad.match.
+   */
+  private static final Histogram SHOWN_MATCH_LATENCY = Metrics.histogram("ui.match.shown");
+
   private String username;
-  private int tableSize = 0;
   private Board board;
   private int selectedRowIdx = -1;
-  private DefaultTableModel defaultTableModel;
-  private static final Object[] tableHeaders = {
-    "Ad Type", "Description", "Keywords", "Duration (d)", "Price ($)"
-  };
+  private AdTableModel adTableModel;
+  private CompletableFuture<?> loading;
 
   /**
    * Two-argument constructor.
@@ -41,23 +47,20 @@ public class AdTable extends JTable {
    * @param board the model of the application.
    * @param getDataFromAdDatabase flag allowing to choose to load
    * the table from the AdDatabase of the board or not.
-   * @throws FileNotFoundException if the file does not exist,
-   * is a directory rather than a regular file,
-   * or for some other reason cannot be opened for reading.
+   * The ads are loaded in background and shown as soon as they are loaded.
    */
-  public AdTable(Board board, boolean getDataFromAdDatabase)
-  throws FileNotFoundException {
+  public AdTable(Board board, boolean getDataFromAdDatabase) {
 
     this.username = board.getUsername();
     this.board = board;
 
-    if(getDataFromAdDatabase)
-      setModel(new DefaultTableModel(getDataFromBoardAdDatabase(), tableHeaders));
-    else
-      setModel(new DefaultTableModel(null, tableHeaders));
-
-    defaultTableModel = (DefaultTableModel)this.getModel();
-    tableSize = defaultTableModel.getDataVector().size();
+    adTableModel = new AdTableModel(Collections.emptyList());
+    setModel(adTableModel);
+    if(getDataFromAdDatabase) {
+      CompletableFuture<List<Ad>> userAds = board.loadUserAds();
+      loading = userAds;
+      userAds.thenAccept(adTableModel::addAds);
+    }
     getTableHeader().setReorderingAllowed(false);
 
     setRowHeight(25);
@@ -87,10 +90,8 @@ public class AdTable extends JTable {
    * Removes the Ad selected by the mouse from the table.
    */
   public void removeSelectedAd() {
-    if(selectedRowIdx != -1 && tableSize > 0) {
-      tableSize--;
-      defaultTableModel.removeRow(selectedRowIdx);
-      defaultTableModel.fireTableDataChanged();
+    if(getModel() == adTableModel && selectedRowIdx != -1 && selectedRowIdx < getRowCount()) {
+      adTableModel.removeRow(convertRowIndexToModel(selectedRowIdx));
     }
   }
 
@@ -98,9 +99,7 @@ public class AdTable extends JTable {
    * Adds an empty Ad to the table.
    */
   public void addAd() {
-    tableSize++;
-    defaultTableModel.addRow(new Object[]{"", "", "", "", ""});
-    defaultTableModel.fireTableDataChanged();
+    adTableModel.addEmptyRow();
   }
 
   /**
@@ -112,20 +111,20 @@ public class AdTable extends JTable {
    */
   public Ad getSelectedAd()
   throws IllegalArgumentException {
-    if(selectedRowIdx != -1) {
-      Object[][] tableData = getDataFromTable();
-      boolean emptyField = !Arrays.stream(tableData[selectedRowIdx]).anyMatch(
+    if(getModel() == adTableModel && selectedRowIdx != -1 && selectedRowIdx < getRowCount()) {
+      Object[] rowData = adTableModel.getRow(convertRowIndexToModel(selectedRowIdx));
+      boolean emptyField = !Arrays.stream(rowData).anyMatch(
         obj -> Objects.toString(obj).length() == 0
       );
       if(emptyField) {
-        String duration = Objects.toString(tableData[selectedRowIdx][3]);
-        String price = Objects.toString(tableData[selectedRowIdx][4]);
+        String duration = Objects.toString(rowData[3]);
+        String price = Objects.toString(rowData[4]);
         if(duration.matches("\\d+") && price.matches("^(\\d+)?(\\.)?(\\d+)?$")) {
           return new Ad(
             username,
-            AdType.parse(Objects.toString(tableData[selectedRowIdx][0])),
-            Objects.toString(tableData[selectedRowIdx][1]),
-            Objects.toString(tableData[selectedRowIdx][2]),
+            AdType.parse(Objects.toString(rowData[0])),
+            Objects.toString(rowData[1]),
+            Objects.toString(rowData[2]),
             Long.parseLong(duration), Double.parseDouble(price)
           );
         } else {
@@ -141,88 +140,29 @@ public class AdTable extends JTable {
 
   /**
    * Automatically discovers if there are any matches between
-   * BUY and SELL ads of various users through their keywords.
+   * BUY and SELL ads of various users through their keywords,
+   * listing the best matches first.
+   * The matches are ranked in background and, however many they are,
+   * only the rows around the viewport are loaded.
    * 
-   * @throws FileNotFoundException if the file does not exist,
-   * is a directory rather than a regular file,
-   * or for some other reason cannot be opened for reading.
+   * @param progress the listener to the progress of the matching,
+   * called from the worker of the board.
+   * @return the future completed on the event dispatch thread once the matches are shown.
    */
-  public void match() throws FileNotFoundException {
-    Board.AdIterator iterator = board.new AdIterator();
-    ArrayList<Ad> currentUsrAds = new ArrayList<>();
-    ArrayList<Ad> otherUsrAds = new ArrayList<>();
-    ArrayList<Ad> matches = new ArrayList<>();
-    while(iterator.hasNext()) {
-      Ad ad = iterator.getNext();
-      if(Objects.equals(ad.getUsername(), username))
-        currentUsrAds.add(ad);
-      else
-        otherUsrAds.add(ad);
-    }
-    for (Ad currentUsrAd : currentUsrAds) {
-      for (Ad otherUsrAd : otherUsrAds) {
-        boolean oppositeAdTypes = !Objects.equals(
-          currentUsrAd.getType(), otherUsrAd.getType()
-        );
-        boolean matchingAdKeywords = Objects.deepEquals(
-          currentUsrAd.getKeywords(), otherUsrAd.getKeywords()
-        );
-
-        if(oppositeAdTypes && matchingAdKeywords && !matches.contains(otherUsrAd)) {
-          matches.add(otherUsrAd);
-          tableSize++;
-          String string = Arrays.toString(otherUsrAd.getKeywords());
-          addAd(
-            Objects.toString(otherUsrAd.getType()),
-            Objects.toString(otherUsrAd.getDescription()),
-            string.substring(string.indexOf("[") + 1, string.indexOf("]")),
-            Objects.toString(otherUsrAd.getRemainingDays()),
-            Objects.toString(otherUsrAd.getPrice())
-          );
-        }
-      }
-    }
-  }
-
-  private Object[][] getDataFromBoardAdDatabase() throws FileNotFoundException {
-    ArrayList<Object[]> arrayList = new ArrayList<Object[]>();
-    Board.AdIterator iterator = board.new AdIterator();
-    while(iterator.hasNext()) {
-      Ad ad = iterator.getNext();
-      if(Objects.equals(ad.getUsername(), username)) {
-        String string = Arrays.toString(ad.getKeywords());
-        arrayList.add(new Object[]{
-          ad.getType(), ad.getDescription(),
-          string.substring(string.indexOf("[") + 1, string.indexOf("]")),
-          ad.getRemainingDays(), ad.getPrice()
-        });
-      }
-    }
-    Object[][] tableData = new Object[arrayList.size()][];
-    for (int i = 0; i < arrayList.size(); i++) {
-      tableData[i] =  arrayList.get(i);
-    }
-    return tableData;
-  }
-
-  private void addAd(
-    String type, String description, String keywords, String days, String price
-  ) {
-    tableSize++;
-    defaultTableModel.addRow(new Object[]{
-      type, description, keywords, days, price
+  public CompletableFuture<Void> match(ProgressListener progress) {
+    long start = System.nanoTime();
+    CompletableFuture<AdCursor> matches = board.matchAds(progress);
+    loading = matches;
+    return matches.thenAccept(cursor -> {
+      setModel(new PagedAdTableModel(cursor));
+      SHOWN_MATCH_LATENCY.recordSince(start);
     });
   }
 
-  private Object[][] getDataFromTable() {
-    DefaultTableModel dtm = (DefaultTableModel)this.getModel();
-    int nRow = dtm.getRowCount(), nCol = dtm.getColumnCount();
-    Object[][] tableData = new Object[nRow][nCol];
-    for (int i = 0 ; i < nRow ; i++) {
-      for (int j = 0 ; j < nCol ; j++) {
-        tableData[i][j] = dtm.getValueAt(i,j);
-      }
-    }
-    return tableData;
+  /**
+   * Cancels the loading of the table, if it is still in progress.
+   */
+  public void cancelLoading() {
+    if(loading != null) loading.cancel(true);
   }
 }
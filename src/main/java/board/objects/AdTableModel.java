@@ -0,0 +1,175 @@
+/**
+ * Package containing the fundamental objects of the Board application.
+ */
+package board.objects;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Objects;
+
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * Class representing the model of an AdTable.
+ * The rows are backed by the ads themselves and their cells are read from
+ * the ads on demand; only a row being edited is copied into its own cells.
+ * Every change fires the event of the rows it touched, so only those are repainted.
+ */
+@SuppressWarnings("serial")
+public class AdTableModel extends AbstractTableModel {
+
+  static final String[] columnNames = {
+    "Ad Type", "Description", "Keywords", "Duration (d)", "Price ($)"
+  };
+
+  /*
+   * Each row is either an Ad or, once edited, the Object[] of its cells.
+   */
+  private ArrayList<Object> rows = new ArrayList<>();
+
+  /**
+   * One-argument constructor.
+   *
+   * @param ads the ads to be shown in the table.
+   */
+  public AdTableModel(Collection<Ad> ads) {
+    rows.addAll(ads);
+  }
+
+  /**
+   * Gets the number of rows of the table.
+   *
+   * @return the number of rows.
+   */
+  @Override
+  public int getRowCount() {
+    return rows.size();
+  }
+
+  /**
+   * Gets the number of columns of the table.
+   *
+   * @return the number of columns.
+   */
+  @Override
+  public int getColumnCount() {
+    return columnNames.length;
+  }
+
+  /**
+   * Gets the name of a column.
+   *
+   * @param column the index of the column.
+   * @return the name of the column.
+   */
+  @Override
+  public String getColumnName(int column) {
+    return columnNames[column];
+  }
+
+  /**
+   * Every cell of the table can be edited.
+   *
+   * @param row the index of the row.
+   * @param column the index of the column.
+   * @return true.
+   */
+  @Override
+  public boolean isCellEditable(int row, int column) {
+    return true;
+  }
+
+  /**
+   * Gets the value of a cell, reading it from its ad if the row was not edited.
+   *
+   * @param row the index of the row.
+   * @param column the index of the column.
+   * @return the value of the cell.
+   */
+  @Override
+  public Object getValueAt(int row, int column) {
+    Object rowObject = rows.get(row);
+    if(rowObject instanceof Object[]) return ((Object[])rowObject)[column];
+    return getCell((Ad)rowObject, column);
+  }
+
+  /*
+   * Gets the value a column of the table shows for an ad.
+   */
+  static Object getCell(Ad ad, int column) {
+    switch(column) {
+      case 0:
+        return ad.getType();
+      case 1:
+        return ad.getDescription();
+      case 2:
+        return String.join(", ", ad.getKeywords());
+      case 3:
+        return ad.getRemainingDays();
+      default:
+        return ad.getPrice();
+    }
+  }
+
+  /**
+   * Sets the value of a cell, copying the cells of its row out of its ad the first time.
+   *
+   * @param value the value to be set.
+   * @param row the index of the row.
+   * @param column the index of the column.
+   */
+  @Override
+  public void setValueAt(Object value, int row, int column) {
+    Object[] cells = getRow(row);
+    if(Objects.equals(cells[column], value)) return;
+    cells[column] = value;
+    rows.set(row, cells);
+    fireTableCellUpdated(row, column);
+  }
+
+  /**
+   * Gets the cells of a single row.
+   *
+   * @param row the index of the row.
+   * @return a copy of the cells of the row.
+   */
+  public Object[] getRow(int row) {
+    Object rowObject = rows.get(row);
+    if(rowObject instanceof Object[]) return ((Object[])rowObject).clone();
+    Object[] cells = new Object[columnNames.length];
+    for (int column = 0; column < cells.length; column++) {
+      cells[column] = getValueAt(row, column);
+    }
+    return cells;
+  }
+
+  /**
+   * Appends an empty row to be filled in.
+   */
+  public void addEmptyRow() {
+    rows.add(new Object[]{"", "", "", "", ""});
+    fireTableRowsInserted(rows.size() - 1, rows.size() - 1);
+  }
+
+  /**
+   * Appends the rows of some ads.
+   *
+   * @param ads the ads to be appended.
+   */
+  public void addAds(Collection<Ad> ads) {
+    if(ads.isEmpty()) return;
+    int firstRow = rows.size();
+    rows.addAll(ads);
+    fireTableRowsInserted(firstRow, rows.size() - 1);
+  }
+
+  /**
+   * Removes a row.
+   *
+   * @param row the index of the row.
+   */
+  public void removeRow(int row) {
+    rows.remove(row);
+    fireTableRowsDeleted(row, row);
+  }
+}
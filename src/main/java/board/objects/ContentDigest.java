@@ -0,0 +1,148 @@
+/**
+ * Package containing the fundamental objects of the Board application.
+ */
+package board.objects;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Class keeping the SHA-256 digest and the version of the content of a database file.
+ * The records appended through the LogWriter of the database are added to the digest
+ * as they are written, so the file is digested again only if someone else changed it,
+ * which is detected from its size and its identity.
+ * The version is bumped whenever the content is seen to change.
+ */
+final class ContentDigest {
+
+  private File file;
+  private DatabaseLock databaseLock;
+  private MessageDigest messageDigest;
+  private byte[] value;
+  private Object digestedFileKey;
+  private long digestedLength = -1;
+  private Object observedFileKey;
+  private long observedLength = -1;
+  private long version = 0;
+
+  /**
+   * Two-argument constructor.
+   *
+   * @param file the database file.
+   * @param databaseLock the lock held while the file is digested.
+   */
+  ContentDigest(File file, DatabaseLock databaseLock) {
+    this.file = file;
+    this.databaseLock = databaseLock;
+    try {
+      messageDigest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 not available", e);
+    }
+  }
+
+  /**
+   * Gets the version of the content, bumped whenever the content is seen to change.
+   * It costs a lookup of the file attributes.
+   *
+   * @return the version.
+   * @throws IOException if the attributes of the file cannot be read.
+   */
+  synchronized long getVersion() throws IOException {
+    BasicFileAttributes attributes = attributes();
+    Object fileKey = attributes == null ? null : attributes.fileKey();
+    long length = attributes == null ? -1 : attributes.size();
+    if(!Objects.equals(fileKey, observedFileKey) || length != observedLength) {
+      observedFileKey = fileKey;
+      observedLength = length;
+      version++;
+    }
+    return version;
+  }
+
+  /**
+   * Gets the digest of the content.
+   *
+   * @return a copy of the digest.
+   * @throws IOException if the file cannot be read.
+   */
+  byte[] get() throws IOException {
+    databaseLock.lock();
+    try {
+      synchronized (this) {
+        BasicFileAttributes attributes = attributes();
+        Object fileKey = attributes == null ? null : attributes.fileKey();
+        long length = attributes == null ? 0 : attributes.size();
+        if(!Objects.equals(fileKey, digestedFileKey) || length != digestedLength) {
+          digestFile(fileKey, length);
+        }
+        if(value == null) value = cloneDigest().digest();
+        return value.clone();
+      }
+    } finally {
+      databaseLock.unlock();
+    }
+  }
+
+  /**
+   * Adds the records appended to the file to the digest.
+   * Must be called holding the lock of the file, right after the records are written.
+   *
+   * @param fileKey the identity of the file written.
+   * @param offset the size of the file before the records were written.
+   * @param records the records written.
+   */
+  synchronized void appended(Object fileKey, long offset, List<byte[]> records) {
+    long length = offset;
+    for (byte[] record : records) {
+      length += record.length;
+    }
+    if(offset == digestedLength && Objects.equals(fileKey, digestedFileKey)) {
+      for (byte[] record : records) {
+        messageDigest.update(record);
+      }
+      digestedLength = length;
+      value = null;
+    }
+    if(offset == observedLength && Objects.equals(fileKey, observedFileKey)) {
+      observedLength = length;
+      version++;
+    }
+  }
+
+  private void digestFile(Object fileKey, long length) throws IOException {
+    messageDigest.reset();
+    if(length > 0) {
+      try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+        FileChannel fileChannel = randomAccessFile.getChannel();
+        for (long position = 0; position < length; position += Integer.MAX_VALUE) {
+          long size = Math.min(length - position, Integer.MAX_VALUE);
+          messageDigest.update(fileChannel.map(FileChannel.MapMode.READ_ONLY, position, size));
+        }
+      }
+    }
+    digestedFileKey = fileKey;
+    digestedLength = length;
+    value = null;
+  }
+
+  private MessageDigest cloneDigest() {
+    try {
+      return (MessageDigest)messageDigest.clone();
+    } catch (CloneNotSupportedException e) {
+      throw new IllegalStateException("SHA-256 digest not cloneable", e);
+    }
+  }
+
+  private BasicFileAttributes attributes() throws IOException {
+    return file.exists() ? Files.readAttributes(file.toPath(), BasicFileAttributes.class) : null;
+  }
+}
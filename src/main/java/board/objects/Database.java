@@ -4,47 +4,65 @@
 package board.objects;
 
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.util.Objects;
-import java.util.Scanner;
-
-import javax.swing.JOptionPane;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Abstract class representing a general database for the Board application.
  */
 @SuppressWarnings("serial")
-public abstract class Database extends java.io.File {
+public abstract class Database extends java.io.File implements Closeable {
+
+  private transient DatabaseLock databaseLock;
+  private transient ContentDigest contentDigest;
+  private transient LogWriter logWriter;
+  private transient String cachedString;
+  private transient long cachedStringVersion = -1;
 
   /**
    * One-argument constructor.
+   * The entries are appended through a group-committing LogWriter
+   * that leaves them to the operating system until the durability is raised,
+   * holding the lock of the database file shared with the other processes.
    * 
    * @param filePath file path of the database file.
+   * @throws IOException if the database file does not exist and cannot be created.
    */
-  public Database(String filePath) {
+  public Database(String filePath) throws IOException {
     super(filePath);
-    try {
-      createNewFile();
-    } catch (IOException e) {
-      JOptionPane.showMessageDialog(null,
-      e.getMessage(), "Unable to create the database",
-      JOptionPane.ERROR_MESSAGE);
-      System.exit(1);
-    }
+    createNewFile();
+    databaseLock = DatabaseLock.of(this);
+    contentDigest = new ContentDigest(this, databaseLock);
+    logWriter = new LogWriter(toPath(), LogWriter.Durability.NONE, databaseLock, this::entriesAppended);
   }
 
   /**
    * Generic abstract Iterator.
+   * The database file is memory-mapped, so the lines are found by scanning
+   * its bytes and only the bytes of the values read are decoded.
+   * An Iterator is a cursor to be closed once done with it, best through
+   * a try-with-resources statement, and it can be consumed as a Stream.
    *
    * @param <T> object to be returned by getNext().
    */
-  public abstract class Iterator<T> {
+  public abstract class Iterator<T> implements AutoCloseable {
 
-    private Scanner scanner;
+    private MappedByteBuffer buffer;
+    private byte[] lineBuffer = new byte[64];
 
     /**
      * Constructor.
@@ -52,9 +70,10 @@ public abstract class Database extends java.io.File {
      * @throws FileNotFoundException if the file does not exist,
      * is a directory rather than a regular file,
      * or for some other reason cannot be opened for reading.
+     * @throws IOException if the file cannot be mapped in memory.
      */
-    public Iterator() throws FileNotFoundException {
-      scanner = new Scanner(new BufferedReader(new FileReader(Database.this)));
+    public Iterator() throws FileNotFoundException, IOException {
+      buffer = map();
     }
 
     /**
@@ -63,7 +82,7 @@ public abstract class Database extends java.io.File {
      * @return true if another line is present.
      */
     public boolean hasNext() {	
-      return scanner.hasNextLine();
+      return getBuffer().hasRemaining();
     }
 
     /**
@@ -72,18 +91,23 @@ public abstract class Database extends java.io.File {
      * @return string containing next line of the database.
      */
     public String getNextLine() {
-      return scanner.nextLine();
+      return decodeLine(getBuffer().position());
     }
 
     /**
-     * Disposes the Scanner object before closing.
+     * Gets the value of the next line of the database, that is
+     * the text following the first space of a "Field: value" line.
      * 
-     * @throws Throwable the Exception raised by this method.
+     * @return string containing the value of the next line of the database.
      */
-    @Override
-    protected void finalize() throws Throwable {
-      scanner.close();
-      super.finalize();
+    public String getNextValue() {
+      MappedByteBuffer buffer = getBuffer();
+      int start = buffer.position();
+      int limit = buffer.limit();
+      while(start < limit && buffer.get(start) != ' ' && buffer.get(start) != '\n') start++;
+      if(start < limit && buffer.get(start) == ' ') start++;
+      else start = buffer.position();
+      return decodeLine(start);
     }
 
     /**
@@ -94,6 +118,69 @@ public abstract class Database extends java.io.File {
      * is given wrong arguments.
      */
     public abstract T getNext() throws IllegalArgumentException;
+
+    /**
+     * Releases the mapping of the database file.
+     * The Iterator can not be used after it has been closed.
+     */
+    @Override
+    public void close() {
+      buffer = null;
+    }
+
+    /**
+     * Gets a sequential Stream over the remaining objects of this Iterator.
+     * Closing the Stream closes this Iterator.
+     * 
+     * @return the Stream of the remaining objects.
+     */
+    public Stream<T> stream() {
+      java.util.Iterator<T> iterator = new java.util.Iterator<T>() {
+        @Override
+        public boolean hasNext() {
+          return Iterator.this.hasNext();
+        }
+
+        @Override
+        public T next() {
+          if(!Iterator.this.hasNext()) throw new NoSuchElementException();
+          return getNext();
+        }
+      };
+      return StreamSupport.stream(
+        Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL),
+        false
+      ).onClose(this::close);
+    }
+
+    /**
+     * Gets the buffer mapping the database file.
+     * 
+     * @return the buffer mapping the database file.
+     * @throws IllegalStateException if this Iterator has been closed.
+     */
+    protected MappedByteBuffer getBuffer() {
+      if(buffer == null) throw new IllegalStateException("Iterator closed");
+      return buffer;
+    }
+
+    /*
+     * Decodes the bytes from start to the end of the current line
+     * and moves past the line.
+     */
+    private String decodeLine(int start) {
+      MappedByteBuffer buffer = getBuffer();
+      int end = buffer.position();
+      int limit = buffer.limit();
+      while(end < limit && buffer.get(end) != '\n') end++;
+      int length = end - start;
+      if(lineBuffer.length < length) lineBuffer = new byte[length];
+      buffer.position(start);
+      buffer.get(lineBuffer, 0, length);
+      buffer.position(Math.min(end + 1, limit));
+      if(length > 0 && lineBuffer[length - 1] == '\r') length--;
+      return new String(lineBuffer, 0, length, StandardCharsets.UTF_8);
+    }
   }
 
   /**
@@ -111,28 +198,41 @@ public abstract class Database extends java.io.File {
   throws IllegalArgumentException, FileNotFoundException, IOException;
 
   /**
-   * String representation of this database.
+   * String representation of this database, made of its lines.
+   * The string is read once per version of the content.
    * 
    * @return fileString string representation of this database.
    */
   @Override
   public String toString() {
     try {
-      BufferedReader bufferedReader = new BufferedReader(new FileReader(this));
-      String fileString = new String();
-      String lineTmp = fileString = bufferedReader.readLine();
-      while((lineTmp = bufferedReader.readLine()) != null) {
-        fileString += lineTmp;
+      long version = getVersion();
+      synchronized (this) {
+        if(cachedString != null && cachedStringVersion == version) return cachedString;
+      }
+      StringBuilder fileString = new StringBuilder((int)Math.min(length(), Integer.MAX_VALUE));
+      try (BufferedReader bufferedReader = new BufferedReader(
+        new InputStreamReader(new FileInputStream(this), StandardCharsets.UTF_8)
+      )) {
+        String line;
+        while((line = bufferedReader.readLine()) != null) {
+          fileString.append(line);
+        }
+      }
+      synchronized (this) {
+        cachedString = fileString.toString();
+        cachedStringVersion = version;
+        return cachedString;
       }
-      bufferedReader.close();
-      return fileString == null ? new String() : fileString;
     } catch (IOException e) {
       return null;
     }
   }
 
   /**
-   * Checks if two Database objects are equal.
+   * Checks if two Database objects are equal, that is
+   * if they are of the same class and have the same content.
+   * The contents are compared through their digests.
    * 
    * @param obj object to be compared with "this".
    * @return true if equal.
@@ -140,19 +240,43 @@ public abstract class Database extends java.io.File {
   @Override
   public boolean equals(Object obj) {
     if (obj == this) return true;
-    if (!(obj instanceof UserDatabase)) return false;
-    UserDatabase userDatabase = (UserDatabase)obj;
-    return Objects.equals(this.toString(), userDatabase.toString());
+    if (obj == null || obj.getClass() != getClass()) return false;
+    Database database = (Database)obj;
+    return Arrays.equals(digestOrNull(), database.digestOrNull());
   }
 
   /**
-   * Computes the hash code of the Database object.
+   * Computes the hash code of the Database object from the digest of its content.
    * 
    * @return hash code.
    */
   @Override
   public int hashCode() {
-    return Objects.hash(this.toString());
+    return Arrays.hashCode(digestOrNull());
+  }
+
+  /**
+   * Gets the version of the content of this database.
+   * The version changes whenever the content changes, through this object or not,
+   * so it tells cheaply whether something read from the database is still current.
+   * 
+   * @return the version.
+   * @throws IOException if the attributes of the database file cannot be read.
+   */
+  public long getVersion() throws IOException {
+    return contentDigest.getVersion();
+  }
+
+  /**
+   * Gets the SHA-256 digest of the content of this database.
+   * The entries appended through this object are digested as they are written,
+   * so the whole file is digested only if changed by someone else.
+   * 
+   * @return the digest.
+   * @throws IOException if the database file cannot be read.
+   */
+  public byte[] getDigest() throws IOException {
+    return contentDigest.get();
   }
 
   /**
@@ -163,10 +287,11 @@ public abstract class Database extends java.io.File {
    * @throws FileNotFoundException if the file does not exist,
    * is a directory rather than a regular file,
    * or for some other reason cannot be opened for reading.
+   * @throws IOException if the file cannot be read.
    * @throws IllegalArgumentException if the object that's being constructed is given wrong arguments.
    */
   protected abstract boolean containsEntry(Object obj)
-  throws FileNotFoundException, IllegalArgumentException;
+  throws FileNotFoundException, IOException, IllegalArgumentException;
 
   /**
    * Appends a new object to the database.
@@ -176,8 +301,121 @@ public abstract class Database extends java.io.File {
    * does not exist but cannot be created, or cannot be opened for any other reason.
    */
   protected void addEntry(Object obj) throws IOException {
-    BufferedWriter bufferedWriter = new BufferedWriter(new FileWriter(this, true));
-    bufferedWriter.write(obj.toString() + "\n");
-    bufferedWriter.close();
+    awaitEntry(submitEntry(encodeEntry(obj)));
+  }
+
+  /**
+   * Encodes an object as a line of the database.
+   * 
+   * @param obj object that needs to be encoded.
+   * @return the bytes of the line.
+   */
+  protected static byte[] encodeEntry(Object obj) {
+    return (obj.toString() + "\n").getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Gets the durability of the entries appended to the database.
+   * 
+   * @return the durability.
+   */
+  public LogWriter.Durability getDurability() {
+    return logWriter.getDurability();
+  }
+
+  /**
+   * Sets the durability of the entries appended to the database from now on.
+   * 
+   * @param durability the durability.
+   */
+  public void setDurability(LogWriter.Durability durability) {
+    logWriter.setDurability(durability);
+  }
+
+  /**
+   * Queues the bytes of an entry to be appended to the database, without waiting for them.
+   * The entries are appended in the order they are submitted.
+   * 
+   * @param entry the bytes of the entry.
+   * @return the ticket to be waited on through awaitEntry().
+   */
+  protected LogWriter.Ticket submitEntry(byte[] entry) {
+    return logWriter.submit(entry);
+  }
+
+  /**
+   * Waits until a submitted entry has been appended to the database.
+   * Concurrent callers share a single write of their entries.
+   * 
+   * @param ticket the ticket returned by submitEntry().
+   * @throws IOException if the entry could not be written.
+   */
+  protected void awaitEntry(LogWriter.Ticket ticket) throws IOException {
+    logWriter.await(ticket);
+  }
+
+  /**
+   * Waits until every submitted entry has been appended to the database.
+   * 
+   * @throws IOException if the last entry could not be written.
+   */
+  protected void flushEntries() throws IOException {
+    logWriter.flush();
+  }
+
+  /**
+   * Closes the database once done with it, appending the submitted entries
+   * and closing the channel they are appended through.
+   * A closed database can still be read and written, reopening the channel.
+   * 
+   * @throws IOException if the submitted entries could not be written.
+   */
+  @Override
+  public void close() throws IOException {
+    logWriter.close();
+  }
+
+  /*
+   * Called holding the lock of the file right after entries submitted by this database
+   * have been appended to it, at a given offset of the file with a given identity.
+   */
+  void entriesAppended(Object fileKey, long offset, List<byte[]> entries) {
+    contentDigest.appended(fileKey, offset, entries);
+  }
+
+  private byte[] digestOrNull() {
+    try {
+      return getDigest();
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  /*
+   * Gets the lock of the database file, shared by the threads
+   * and the processes opening the same file.
+   */
+  DatabaseLock getDatabaseLock() {
+    return databaseLock;
+  }
+
+  /**
+   * Maps the whole database file in memory for reading.
+   * The file is closed right away: the mapping stays valid on its own
+   * and shares the pages of the file with the operating system cache.
+   * 
+   * @return the buffer mapping the database file.
+   * @throws FileNotFoundException if the file does not exist,
+   * is a directory rather than a regular file,
+   * or for some other reason cannot be opened for reading.
+   * @throws IOException if the file cannot be mapped in memory.
+   */
+  protected MappedByteBuffer map() throws FileNotFoundException, IOException {
+    try (RandomAccessFile randomAccessFile = new RandomAccessFile(this, "r")) {
+      FileChannel fileChannel = randomAccessFile.getChannel();
+      if(fileChannel.size() > Integer.MAX_VALUE)
+        throw new IOException("Database too large to be mapped in memory");
+      return fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileChannel.size());
+    }
   }
 }
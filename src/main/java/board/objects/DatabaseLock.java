@@ -0,0 +1,85 @@
+/**
+ * Package containing the fundamental objects of the Board application.
+ */
+package board.objects;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Class representing the exclusive lock on a database file,
+ * shared by the threads of this process and by the other processes.
+ * The lock is taken on a companion ".lock" file, since the database file
+ * itself is replaced when compacted.
+ * A Java process can hold a single lock on a file, so there is one instance
+ * per database file, whatever the number of Database objects opening it:
+ * the threads queue on a reentrant lock and the first of them
+ * takes the file lock on behalf of the process.
+ */
+final class DatabaseLock {
+
+  private static final ConcurrentHashMap<String, DatabaseLock> locks = new ConcurrentHashMap<>();
+
+  private File lockFile;
+  private ReentrantLock localLock = new ReentrantLock();
+  private FileChannel channel;
+  private FileLock fileLock;
+
+  private DatabaseLock(File lockFile) {
+    this.lockFile = lockFile;
+  }
+
+  /**
+   * Gets the lock of a database file.
+   *
+   * @param databaseFile the database file.
+   * @return the lock shared by every Database opening the file.
+   * @throws IOException if the canonical path of the file cannot be resolved.
+   */
+  static DatabaseLock of(File databaseFile) throws IOException {
+    String path = databaseFile.getCanonicalPath();
+    return locks.computeIfAbsent(path, p -> new DatabaseLock(new File(p + ".lock")));
+  }
+
+  /**
+   * Acquires the lock, waiting for the other threads and processes holding it.
+   * The lock is reentrant and must be released as many times as it was acquired.
+   *
+   * @throws IOException if the lock file cannot be opened or locked.
+   */
+  void lock() throws IOException {
+    localLock.lock();
+    if(localLock.getHoldCount() > 1) return;
+    try {
+      if(channel == null || !channel.isOpen())
+        channel = FileChannel.open(lockFile.toPath(),
+          StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+      fileLock = channel.lock();
+    } catch (IOException | RuntimeException e) {
+      localLock.unlock();
+      throw e;
+    }
+  }
+
+  /**
+   * Releases the lock.
+   *
+   * @throws IOException if the file lock cannot be released.
+   */
+  void unlock() throws IOException {
+    try {
+      if(localLock.getHoldCount() == 1 && fileLock != null) {
+        FileLock heldLock = fileLock;
+        fileLock = null;
+        heldLock.release();
+      }
+    } finally {
+      localLock.unlock();
+    }
+  }
+}
@@ -0,0 +1,55 @@
+/**
+ * Package containing the fundamental objects of the Board application.
+ */
+package board.objects;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class representing the report of a bulk removal of expired ads.
+ */
+public class ExpirySweep {
+
+  private int removedAds;
+  private long elapsedNanos;
+
+  /**
+   * Two-argument constructor.
+   * 
+   * @param removedAds number of expired ads removed by the sweep.
+   * @param elapsedNanos duration of the sweep in nanoseconds.
+   */
+  public ExpirySweep(int removedAds, long elapsedNanos) {
+    this.removedAds = removedAds;
+    this.elapsedNanos = elapsedNanos;
+  }
+
+  /**
+   * Gets the number of expired ads removed by the sweep.
+   * 
+   * @return the number of removed ads.
+   */
+  public int getRemovedAds() {
+    return removedAds;
+  }
+
+  /**
+   * Gets the duration of the sweep.
+   * 
+   * @return the duration in nanoseconds.
+   */
+  public long getElapsedNanos() {
+    return elapsedNanos;
+  }
+
+  /**
+   * Gives a string representation of this report.
+   * 
+   * @return the string representation of this report.
+   */
+  @Override
+  public String toString() {
+    return "Removed " + removedAds + " expired ads in " +
+           TimeUnit.NANOSECONDS.toMillis(elapsedNanos) + " ms";
+  }
+}
@@ -0,0 +1,150 @@
+/**
+ * Package containing the fundamental objects of the Board application.
+ */
+package board.objects;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CancellationException;
+
+import board.objects.Ad.AdType;
+
+/**
+ * Class representing an inverted index from each keyword
+ * to the BUY and SELL ads carrying it.
+ */
+class KeywordIndex {
+
+  private HashMap<String, EnumMap<AdType, Set<Ad>>> postings = new HashMap<>();
+  private HashMap<Ad, List<String>> keywordSets = new HashMap<>();
+
+  /**
+   * Normalizes the keywords of an ad, ignoring their case, order and repetitions.
+   * 
+   * @param keywords the keywords to be normalized.
+   * @return the normalized keyword set.
+   */
+  public static List<String> normalize(String[] keywords) {
+    TreeSet<String> keywordSet = new TreeSet<>();
+    for (String keyword : keywords) {
+      keywordSet.add(keyword.trim().toLowerCase(Locale.ROOT));
+    }
+    return new ArrayList<>(keywordSet);
+  }
+
+  /**
+   * Adds an ad to the index.
+   * 
+   * @param ad the ad to be added.
+   */
+  public void add(Ad ad) {
+    List<String> keywordSet = normalize(ad.getKeywords());
+    keywordSets.put(ad, keywordSet);
+    for (String keyword : keywordSet) {
+      postings
+        .computeIfAbsent(keyword, k -> new EnumMap<>(AdType.class))
+        .computeIfAbsent(ad.getType(), k -> new LinkedHashSet<>())
+        .add(ad);
+    }
+  }
+
+  /**
+   * Removes an ad from the index.
+   * 
+   * @param ad the ad to be removed.
+   */
+  public void remove(Ad ad) {
+    List<String> keywordSet = keywordSets.remove(ad);
+    if(keywordSet == null) return;
+    for (String keyword : keywordSet) {
+      EnumMap<AdType, Set<Ad>> adsByType = postings.get(keyword);
+      Set<Ad> ads = adsByType.get(ad.getType());
+      ads.remove(ad);
+      if(ads.isEmpty()) adsByType.remove(ad.getType());
+      if(adsByType.isEmpty()) postings.remove(keyword);
+    }
+  }
+
+  /**
+   * Removes every ad from the index.
+   */
+  public void clear() {
+    postings.clear();
+    keywordSets.clear();
+  }
+
+  /**
+   * Ranks the ads of the other users matching a given collection of ads.
+   * An ad of opposite type matches if it shares at least a keyword, and it is
+   * scored with the Jaccard similarity of the keyword sets, keeping the best score
+   * among the ads it matches. Only the ads found in the posting lists of the given
+   * ads are scored, and the best ones are selected through a bounded heap.
+   * The progress is reported after each given ad is scored, and the ranking
+   * is given up if the thread running it is interrupted.
+   * 
+   * @param ads the ads to be matched.
+   * @param username the owner of the ads, whose ads are never returned.
+   * @param maxMatches the maximum number of matches to be returned.
+   * @param progress the listener to the progress of the ranking.
+   * @return the matches, sorted by decreasing score.
+   * @throws CancellationException if the thread running the ranking is interrupted.
+   */
+  public List<AdMatch> rank(
+    Collection<Ad> ads, String username, int maxMatches, ProgressListener progress
+  ) throws CancellationException {
+    MatchRun event = new MatchRun();
+    event.begin();
+    Map<Ad, Double> scores = new LinkedHashMap<>();
+    int scoredAds = 0;
+    for (Ad ad : ads) {
+      if(Thread.currentThread().isInterrupted())
+        throw new CancellationException("Matching cancelled");
+      List<String> keywordSet = keywordSets.get(ad);
+      AdType oppositeType = ad.getType() == AdType.BUY ? AdType.SELL : AdType.BUY;
+      Map<Ad, Integer> overlaps = new HashMap<>();
+      for (String keyword : keywordSet) {
+        EnumMap<AdType, Set<Ad>> adsByType = postings.get(keyword);
+        for (Ad candidate : adsByType.getOrDefault(oppositeType, Collections.emptySet())) {
+          if(!Objects.equals(candidate.getUsername(), username))
+            overlaps.merge(candidate, 1, Integer::sum);
+        }
+      }
+      for (Map.Entry<Ad, Integer> overlap : overlaps.entrySet()) {
+        int union = keywordSet.size() + keywordSets.get(overlap.getKey()).size() - overlap.getValue();
+        scores.merge(overlap.getKey(), (double)overlap.getValue() / union, Math::max);
+      }
+      progress.progressed(++scoredAds, ads.size());
+    }
+    Comparator<AdMatch> byScore = Comparator.comparingDouble(AdMatch::getScore);
+    PriorityQueue<AdMatch> bestMatches = new PriorityQueue<>(byScore);
+    for (Map.Entry<Ad, Double> score : scores.entrySet()) {
+      if(bestMatches.size() < maxMatches) {
+        bestMatches.add(new AdMatch(score.getKey(), score.getValue()));
+      } else if(maxMatches > 0 && score.getValue() > bestMatches.peek().getScore()) {
+        bestMatches.poll();
+        bestMatches.add(new AdMatch(score.getKey(), score.getValue()));
+      }
+    }
+    List<AdMatch> matches = new ArrayList<>(bestMatches);
+    matches.sort(byScore.reversed());
+    event.username = username;
+    event.ads = ads.size();
+    event.candidates = scores.size();
+    event.matches = matches.size();
+    event.commit();
+    return matches;
+  }
+}
@@ -0,0 +1,281 @@
+/**
+ * Package containing the fundamental objects of the Board application.
+ */
+package board.objects;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Class appending records to a database file through a long-lived channel.
+ * Writes are group-committed: the records submitted while a batch is being
+ * written are coalesced into the next batch, which is written by one of the
+ * waiting callers with a single gathering write and, depending on the
+ * durability, a single force.
+ * If the file is replaced, for instance by a compaction, the channel is reopened.
+ */
+public class LogWriter implements Closeable {
+
+  /**
+   * Enumerator designed to represent when the written records are forced to disk.
+   */
+  public enum Durability {
+    /**
+     * Records are left to the operating system.
+     */
+    NONE,
+    /**
+     * Records are forced to disk once per batch.
+     */
+    BATCH,
+    /**
+     * Records are forced to disk one by one.
+     */
+    RECORD
+  }
+
+  /**
+   * Class representing a record submitted to the writer.
+   */
+  public static final class Ticket {
+
+    private ByteBuffer record;
+    private boolean done;
+    private IOException error;
+
+    private Ticket(byte[] record) {
+      this.record = ByteBuffer.wrap(record);
+    }
+  }
+
+  /*
+   * Listener to the batches written, called holding the lock of the file
+   * right after a batch is written.
+   */
+  interface Listener {
+    void appended(Object fileKey, long offset, List<byte[]> records);
+  }
+
+  private Path path;
+  private DatabaseLock databaseLock;
+  private Listener listener;
+  private volatile Durability durability;
+  private FileChannel channel;
+  private Object fileKey;
+  private ReentrantLock lock = new ReentrantLock();
+  private Condition batchWritten = lock.newCondition();
+  private ArrayDeque<Ticket> pending = new ArrayDeque<>();
+  private Ticket lastTicket;
+  private boolean writing = false;
+
+  /**
+   * Two-argument constructor.
+   * The file is opened on the first write.
+   *
+   * @param path the path of the file the records are appended to.
+   * @param durability the durability of the written records.
+   */
+  public LogWriter(Path path, Durability durability) {
+    this(path, durability, null, null);
+  }
+
+  /*
+   * Four-argument constructor: each batch is written holding the lock of the database file,
+   * so that it never interleaves with the writes and the compactions of other processes,
+   * and it is handed to the listener of the database, which adds it to its content digest.
+   */
+  LogWriter(Path path, Durability durability, DatabaseLock databaseLock, Listener listener) {
+    this.path = path;
+    this.durability = durability;
+    this.databaseLock = databaseLock;
+    this.listener = listener;
+  }
+
+  /**
+   * Gets the durability of the written records.
+   *
+   * @return the durability.
+   */
+  public Durability getDurability() {
+    return durability;
+  }
+
+  /**
+   * Sets the durability of the records written from now on.
+   *
+   * @param durability the durability.
+   */
+  public void setDurability(Durability durability) {
+    this.durability = Objects.requireNonNull(durability);
+  }
+
+  /**
+   * Appends a record to the file, waiting until its batch has been written.
+   *
+   * @param record the bytes of the record.
+   * @throws IOException if the batch of the record could not be written.
+   */
+  public void append(byte[] record) throws IOException {
+    await(submit(record));
+  }
+
+  /**
+   * Waits until every record submitted so far has been written.
+   *
+   * @throws IOException if the batch of the last record could not be written.
+   */
+  public void flush() throws IOException {
+    Ticket ticket;
+    lock.lock();
+    try {
+      ticket = lastTicket;
+    } finally {
+      lock.unlock();
+    }
+    if(ticket != null) await(ticket);
+  }
+
+  /**
+   * Writes the pending records and closes the channel.
+   * The writer reopens it if used again.
+   *
+   * @throws IOException if the pending records or the channel could not be written.
+   */
+  @Override
+  public void close() throws IOException {
+    flush();
+    lock.lock();
+    try {
+      if(channel != null) channel.close();
+      channel = null;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /*
+   * Queues a record, fixing its position in the file, without waiting for it.
+   */
+  Ticket submit(byte[] record) {
+    Ticket ticket = new Ticket(record);
+    lock.lock();
+    try {
+      pending.add(ticket);
+      lastTicket = ticket;
+    } finally {
+      lock.unlock();
+    }
+    return ticket;
+  }
+
+  /*
+   * Waits until a queued record has been written, writing a batch
+   * on behalf of every waiting caller if no one else is doing it.
+   */
+  void await(Ticket ticket) throws IOException {
+    lock.lock();
+    try {
+      while(!ticket.done) {
+        if(writing) {
+          batchWritten.awaitUninterruptibly();
+          continue;
+        }
+        writing = true;
+        List<Ticket> batch = new ArrayList<>(pending);
+        pending.clear();
+        IOException error = null;
+        lock.unlock();
+        try {
+          write(batch);
+        } catch (IOException e) {
+          error = e;
+        } catch (RuntimeException e) {
+          error = new IOException(e);
+        } finally {
+          lock.lock();
+        }
+        for (Ticket written : batch) {
+          written.done = true;
+          written.error = error;
+        }
+        writing = false;
+        batchWritten.signalAll();
+      }
+    } finally {
+      lock.unlock();
+    }
+    if(ticket.error != null)
+      throw new IOException(ticket.error.getMessage(), ticket.error);
+  }
+
+  /*
+   * Writes a batch; only one caller at a time gets here.
+   */
+  private void write(List<Ticket> batch) throws IOException {
+    if(batch.isEmpty()) return;
+    if(databaseLock != null) databaseLock.lock();
+    try {
+      writeBatch(batch);
+    } finally {
+      if(databaseLock != null) databaseLock.unlock();
+    }
+  }
+
+  private void writeBatch(List<Ticket> batch) throws IOException {
+    FileChannel fileChannel = openChannel();
+    long offset = fileChannel.size();
+    Durability batchDurability = durability;
+    if(batchDurability == Durability.RECORD) {
+      for (Ticket ticket : batch) {
+        while(ticket.record.hasRemaining()) fileChannel.write(ticket.record);
+        fileChannel.force(false);
+      }
+    } else {
+      ByteBuffer[] records = new ByteBuffer[batch.size()];
+      long remaining = 0;
+      for (int i = 0; i < records.length; i++) {
+        records[i] = batch.get(i).record;
+        remaining += records[i].remaining();
+      }
+      while(remaining > 0) remaining -= fileChannel.write(records);
+      if(batchDurability == Durability.BATCH) fileChannel.force(false);
+    }
+    if(listener != null) {
+      List<byte[]> records = new ArrayList<>(batch.size());
+      for (Ticket ticket : batch) {
+        records.add(ticket.record.array());
+      }
+      listener.appended(fileKey, offset, records);
+    }
+  }
+
+  /*
+   * Opens the channel, or reopens it if the file has been replaced since.
+   */
+  private FileChannel openChannel() throws IOException {
+    Object currentFileKey = Files.exists(path) ?
+      Files.readAttributes(path, BasicFileAttributes.class).fileKey() : null;
+    if(channel != null && (currentFileKey == null || !currentFileKey.equals(fileKey))) {
+      channel.close();
+      channel = null;
+    }
+    if(channel == null) {
+      channel = FileChannel.open(path,
+        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+      fileKey = Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+    }
+    return channel;
+  }
+}
@@ -0,0 +1,26 @@
+/**
+ * Package containing the fundamental objects of the Board application.
+ */
+package board.objects;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event of a login attempt, including the verification of the password.
+ */
+@Name("board.LoginAttempt")
+@Label("Login Attempt")
+@Category({"Board", "Users"})
+@Description("Attempt to log a user in")
+class LoginAttempt extends Event {
+
+  @Label("Username")
+  String username;
+
+  @Label("Success")
+  boolean success;
+}
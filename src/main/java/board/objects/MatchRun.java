@@ -0,0 +1,35 @@
+/**
+ * Package containing the fundamental objects of the Board application.
+ */
+package board.objects;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event of the ranking of the matches of the ads of a user.
+ */
+@Name("board.MatchRun")
+@Label("Match Run")
+@Category({"Board", "Matching"})
+@Description("Ranking of the matches of the ads of a user")
+class MatchRun extends Event {
+
+  @Label("Username")
+  String username;
+
+  @Label("Ads")
+  @Description("Ads of the user being matched")
+  int ads;
+
+  @Label("Candidates")
+  @Description("Ads sharing at least a keyword with an ad of the user")
+  int candidates;
+
+  @Label("Matches")
+  @Description("Matches returned")
+  int matches;
+}
@@ -0,0 +1,120 @@
+/**
+ * Package containing the fundamental objects of the Board application.
+ */
+package board.objects;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * Class representing a read-only model of an AdTable over an AdCursor.
+ * The rows are fetched from the cursor a page at a time, when the table
+ * first paints one of them as the viewport of its scroll pane moves,
+ * and only the MAX_PAGES most recently painted pages are kept,
+ * so the memory held does not grow with the number of rows.
+ */
+@SuppressWarnings("serial")
+public class PagedAdTableModel extends AbstractTableModel {
+
+  /**
+   * Number of rows fetched at a time.
+   */
+  public static final int PAGE_SIZE = 50;
+
+  /**
+   * Maximum number of pages kept in memory.
+   */
+  public static final int MAX_PAGES = 8;
+
+  private AdCursor cursor;
+  private int rowCount;
+  private LinkedHashMap<Integer, Object[][]> pages = new LinkedHashMap<Integer, Object[][]>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Integer, Object[][]> eldest) {
+      return size() > MAX_PAGES;
+    }
+  };
+
+  /**
+   * One-argument constructor.
+   *
+   * @param cursor the cursor the rows are fetched from.
+   */
+  public PagedAdTableModel(AdCursor cursor) {
+    this.cursor = cursor;
+    this.rowCount = cursor.size();
+  }
+
+  /**
+   * Gets the number of rows of the table.
+   *
+   * @return the number of rows.
+   */
+  @Override
+  public int getRowCount() {
+    return rowCount;
+  }
+
+  /**
+   * Gets the number of columns of the table.
+   *
+   * @return the number of columns.
+   */
+  @Override
+  public int getColumnCount() {
+    return AdTableModel.columnNames.length;
+  }
+
+  /**
+   * Gets the name of a column.
+   *
+   * @param column the index of the column.
+   * @return the name of the column.
+   */
+  @Override
+  public String getColumnName(int column) {
+    return AdTableModel.columnNames[column];
+  }
+
+  /**
+   * Gets the value of a cell, fetching its page if it is not in memory.
+   *
+   * @param row the index of the row.
+   * @param column the index of the column.
+   * @return the value of the cell.
+   */
+  @Override
+  public Object getValueAt(int row, int column) {
+    Object[] cells = getPage(row / PAGE_SIZE)[row % PAGE_SIZE];
+    return cells == null ? null : cells[column];
+  }
+
+  /**
+   * Gets the number of pages currently in memory.
+   *
+   * @return the number of pages.
+   */
+  public int getPageCount() {
+    return pages.size();
+  }
+
+  private Object[][] getPage(int pageIndex) {
+    Object[][] page = pages.get(pageIndex);
+    if(page == null) {
+      List<Ad> ads = cursor.fetch(pageIndex * PAGE_SIZE, PAGE_SIZE);
+      page = new Object[PAGE_SIZE][];
+      for (int i = 0; i < ads.size(); i++) {
+        Object[] cells = new Object[AdTableModel.columnNames.length];
+        for (int column = 0; column < cells.length; column++) {
+          cells[column] = AdTableModel.getCell(ads.get(i), column);
+        }
+        page[i] = cells;
+      }
+      pages.put(pageIndex, page);
+    }
+    return page;
+  }
+}
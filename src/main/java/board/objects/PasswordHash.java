@@ -0,0 +1,95 @@
+/**
+ * Package containing the fundamental objects of the Board application.
+ */
+package board.objects;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * Class computing and verifying the salted password hashes stored in a UserDatabase.
+ * A hash is stored as "pbkdf2$iterations$salt$hash", with salt and hash in Base64.
+ */
+final class PasswordHash {
+
+  private static final String PREFIX = "pbkdf2";
+  private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+  private static final int ITERATIONS = 65536;
+  private static final int SALT_LENGTH = 16;
+  private static final int HASH_LENGTH = 256;
+  private static final SecureRandom random = new SecureRandom();
+
+  private PasswordHash() {}
+
+  /**
+   * Hashes a password with a new random salt.
+   * 
+   * @param password the password to be hashed.
+   * @return the encoded hash.
+   */
+  public static String hash(String password) {
+    byte[] salt = new byte[SALT_LENGTH];
+    random.nextBytes(salt);
+    Base64.Encoder encoder = Base64.getEncoder();
+    return PREFIX + "$" + ITERATIONS + "$" +
+           encoder.encodeToString(salt) + "$" +
+           encoder.encodeToString(pbkdf2(password, salt, ITERATIONS));
+  }
+
+  /**
+   * Checks a password against a stored hash.
+   * Stored values not produced by hash(String) are legacy plain-text passwords,
+   * while a malformed hash never matches.
+   * 
+   * @param password the password to be checked.
+   * @param storedHash the stored hash.
+   * @return true if the password is valid.
+   */
+  public static boolean verify(String password, String storedHash) {
+    if(isLegacy(storedHash)) {
+      return MessageDigest.isEqual(
+        password.getBytes(StandardCharsets.UTF_8),
+        storedHash.getBytes(StandardCharsets.UTF_8)
+      );
+    }
+    String[] fields = storedHash.split("\\$", -1);
+    if(fields.length != 4) return false;
+    try {
+      int iterations = Integer.parseInt(fields[1]);
+      Base64.Decoder decoder = Base64.getDecoder();
+      byte[] salt = decoder.decode(fields[2]);
+      byte[] hash = decoder.decode(fields[3]);
+      if(iterations <= 0 || salt.length == 0 || hash.length == 0) return false;
+      return MessageDigest.isEqual(pbkdf2(password, salt, iterations), hash);
+    } catch (IllegalArgumentException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Checks if a stored value is a legacy plain-text password rather than a hash.
+   * 
+   * @param storedHash the stored value.
+   * @return true if the value is a plain-text password, to be hashed once verified.
+   */
+  public static boolean isLegacy(String storedHash) {
+    return !storedHash.startsWith(PREFIX + "$");
+  }
+
+  private static byte[] pbkdf2(String password, byte[] salt, int iterations) {
+    PBEKeySpec keySpec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_LENGTH);
+    try {
+      return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(keySpec).getEncoded();
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException(ALGORITHM + " is not available", e);
+    } finally {
+      keySpec.clearPassword();
+    }
+  }
+}
@@ -0,0 +1,25 @@
+/**
+ * Package containing the fundamental objects of the Board application.
+ */
+package board.objects;
+
+/**
+ * Interface representing a listener to the progress of a long operation.
+ */
+@FunctionalInterface
+public interface ProgressListener {
+
+  /**
+   * Listener ignoring the progress.
+   */
+  ProgressListener NONE = (done, total) -> { };
+
+  /**
+   * Called whenever the operation progresses.
+   * It is called from the thread running the operation.
+   *
+   * @param done the number of steps done.
+   * @param total the total number of steps.
+   */
+  void progressed(int done, int total);
+}
@@ -27,8 +27,8 @@ public class User {
       password == null ||
       username.isEmpty() ||
       password.isEmpty() ||
-      containsPattern("\\s", username) ||
-      containsPattern("\\s", password);
+      containsWhitespace(username) ||
+      containsWhitespace(password);
 
     if(validCredentials) {
       throw new IllegalArgumentException("Username and password can not contain whitespaces");
@@ -38,6 +38,27 @@ public class User {
     }
   }
 
+  /*
+   * Empty constructor, leaving the credentials to be set by trusted().
+   */
+  private User() {
+  }
+
+  /**
+   * Creates a User from credentials that have already been validated,
+   * such as the ones read back from a UserDatabase.
+   * 
+   * @param username the username of the User.
+   * @param password the password of the User.
+   * @return the new User.
+   */
+  static User trusted(String username, String password) {
+    User user = new User();
+    user.username = username;
+    user.password = password;
+    return user;
+  }
+
   /**
    * Gets the username of this User.
    * 
@@ -90,7 +111,17 @@ public class User {
     return Objects.hash(username);
   }
 
-  private static boolean containsPattern(String pattern, String string) {
-    return java.util.regex.Pattern.compile(pattern).matcher(string).find();
+  /*
+   * Checks for the characters matched by the "\\s" regular expression
+   * without compiling it.
+   */
+  private static boolean containsWhitespace(String string) {
+    for (int i = 0; i < string.length(); i++) {
+      switch (string.charAt(i)) {
+        case ' ': case '\t': case '\n': case '\u000B': case '\f': case '\r':
+          return true;
+      }
+    }
+    return false;
   }
 }
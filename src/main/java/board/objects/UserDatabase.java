@@ -3,25 +3,56 @@
  */
 package board.objects;
 
+import java.io.BufferedOutputStream;
+import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
 import java.util.Objects;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+import board.metrics.Counter;
+import board.metrics.Histogram;
+import board.metrics.Metrics;
 
 /**
- * Class representing a database containing the users of the board 
- *
+ * Class representing a database containing the users of the board.
+ * The passwords are stored as salted hashes and the users are indexed
+ * by username when the database is loaded; the plain-text passwords
+ * of a former database are hashed as their users log in.
+ * Logins look the index up in parallel, while registrations are serialized
+ * by the lock of the database file, shared with the other processes,
+ * so that a username is never taken twice.
  */
 @SuppressWarnings("serial")
 public class UserDatabase extends Database {
 
+  private static final String DUMMY_HASH = PasswordHash.hash("");
+
+  private static final Histogram LOGIN_LATENCY = Metrics.histogram("user.login");
+  private static final Counter LOGIN_FAILURES = Metrics.counter("user.login.failures");
+  private static final Histogram SCAN_RECORDS = Metrics.histogram("user.scan.records");
+  private static final Histogram SCAN_BYTES = Metrics.histogram("user.scan.bytes");
+
   private String username, password;
+  private HashMap<String, String> passwordHashes = new HashMap<>();
+  private ReentrantReadWriteLock indexLock = new ReentrantReadWriteLock();
+  private volatile Object loadedFileKey;
+  private volatile long loadedLength = -1;
 
   /**
    * One-argument constructor.
    * 
    * @param filePath the path of the database file.
+   * @throws IOException if the database file does not exist and cannot be created.
    */
-  public UserDatabase(String filePath) {
+  public UserDatabase(String filePath) throws IOException {
     super(filePath);
   }
 
@@ -62,24 +93,55 @@ public class UserDatabase extends Database {
   }
 
   /**
-   * Attempts the login procedure for a given user.
+   * Attempts the login procedure for the current user of this database.
    * 
    * @throws IllegalArgumentException if username or password
    * contain whitespaces, are empty or null. If the username and/or password are invalid.
    * @throws FileNotFoundException If the database file does not exist,
    * is a directory rather than a regular file,
    * or for some other reason cannot be opened for reading.
+   * @throws IOException if the database file cannot be read.
    */
   public void login()
-  throws IllegalArgumentException, FileNotFoundException {
-    UserDatabase.Iterator iterator = this.new Iterator();
-    while(iterator.hasNext()) {
-      User user = iterator.getNext();
-      boolean validUsername = Objects.equals(username, user.getUsername());
-      boolean validPassword = Objects.equals(password, user.getPassword());
-      if(validUsername && validPassword) return;
+  throws IllegalArgumentException, FileNotFoundException, IOException {
+    login(username, password);
+  }
+
+  /**
+   * Attempts the login procedure for a given user.
+   * A legacy plain-text password is replaced by its hash once verified.
+   * 
+   * @param username the username of the user.
+   * @param password the password of the user.
+   * @throws IllegalArgumentException if the username and/or password are invalid.
+   * @throws FileNotFoundException If the database file does not exist,
+   * is a directory rather than a regular file,
+   * or for some other reason cannot be opened for reading.
+   * @throws IOException if the database file cannot be read,
+   * or the legacy password cannot be replaced by its hash.
+   */
+  public void login(String username, String password)
+  throws IllegalArgumentException, FileNotFoundException, IOException {
+    long start = System.nanoTime();
+    LoginAttempt event = new LoginAttempt();
+    event.begin();
+    try {
+      String passwordHash = getPasswordHash(username);
+      boolean validUsername = passwordHash != null;
+      boolean validPassword = password != null &&
+        PasswordHash.verify(password, validUsername ? passwordHash : DUMMY_HASH);
+      event.success = validUsername && validPassword;
+      if(event.success) {
+        if(PasswordHash.isLegacy(passwordHash)) rehash(username, passwordHash, password);
+        return;
+      }
+      LOGIN_FAILURES.increment();
+      throw new IllegalArgumentException("Invalid username and/or password");
+    } finally {
+      LOGIN_LATENCY.recordSince(start);
+      event.username = username;
+      event.commit();
     }
-    throw new IllegalArgumentException("Invalid username and/or password");
   }
 
   /**
@@ -98,8 +160,38 @@ public class UserDatabase extends Database {
   throws IllegalArgumentException, FileNotFoundException, IOException {	
     if(containsEntry(user))
       throw new IllegalArgumentException("Username already taken");
-    else
-      addEntry(user);
+    User newUser = (User)user;
+    String passwordHash = PasswordHash.hash(newUser.getPassword());
+    getDatabaseLock().lock();
+    try {
+      if(containsEntry(user))
+        throw new IllegalArgumentException("Username already taken");
+      addEntry(new User(newUser.getUsername(), passwordHash));
+      indexLock.writeLock().lock();
+      try {
+        passwordHashes.put(newUser.getUsername(), passwordHash);
+        loadedFileKey = fileKey();
+        loadedLength = length();
+      } finally {
+        indexLock.writeLock().unlock();
+      }
+    } finally {
+      getDatabaseLock().unlock();
+    }
+  }
+
+  /**
+   * Gets a Stream over the users contained in the database.
+   * The Stream holds a mapping of the database file until it is closed.
+   * 
+   * @return the Stream of users.
+   * @throws FileNotFoundException if the file does not exist,
+   * is a directory rather than a regular file,
+   * or for some other reason cannot be opened for reading.
+   * @throws IOException if the file cannot be mapped in memory.
+   */
+  public Stream<User> stream() throws FileNotFoundException, IOException {
+    return this.new Iterator().stream();
   }
 
   /**
@@ -113,27 +205,20 @@ public class UserDatabase extends Database {
      * @throws FileNotFoundException if the file does not exist,
      * is a directory rather than a regular file,
      * or for some other reason cannot be opened for reading.
+     * @throws IOException if the file cannot be mapped in memory.
      */
     public Iterator()
-    throws FileNotFoundException {
+    throws FileNotFoundException, IOException {
       super();
     }
 
     /**
      * Gets the next User in the database.
-     *
-     * @throws IllegalArgumentException if username or password
-     * contain whitespaces, are empty or null.
+     * The credentials are trusted since they were validated when registered.
      */
     @Override
-    public User getNext() 
-    throws IllegalArgumentException {
-      String username = getNextLine();
-      String password = getNextLine();
-      return new User(
-        username.substring(username.indexOf(" ") + 1),
-        password.substring(password.indexOf(" ") + 1)
-      );
+    public User getNext() {
+      return User.trusted(getNextValue(), getNextValue());
     }
   }
 
@@ -145,17 +230,102 @@ public class UserDatabase extends Database {
    * @throws FileNotFoundException if the file does not exist,
    * is a directory rather than a regular file,
    * or for some other reason cannot be opened for reading.
+   * @throws IOException if the file cannot be read.
    * @throws IllegalArgumentException if username or password contain whitespaces, are empty or null.
    */
   @Override
   public boolean containsEntry(Object user)
-  throws FileNotFoundException, IllegalArgumentException {
-    UserDatabase.Iterator iterator = this.new Iterator();
-    while(iterator.hasNext()) {
-      if(iterator.getNext().equals(user)) {
-        return true;
+  throws FileNotFoundException, IOException, IllegalArgumentException {
+    return user instanceof User &&
+      getPasswordHash(((User)user).getUsername()) != null;
+  }
+
+  /*
+   * Gets the password hash of a user from the index, loading it once
+   * and again only if the database file was changed by someone else.
+   * Lookups run in parallel, the index is reloaded holding the lock of the file.
+   */
+  private String getPasswordHash(String username)
+  throws FileNotFoundException, IOException {
+    if(!isLoaded()) {
+      getDatabaseLock().lock();
+      indexLock.writeLock().lock();
+      try {
+        if(!isLoaded()) {
+          passwordHashes.clear();
+          try (UserDatabase.Iterator iterator = this.new Iterator()) {
+            while(iterator.hasNext()) {
+              User user = iterator.getNext();
+              passwordHashes.put(user.getUsername(), user.getPassword());
+            }
+          }
+          loadedFileKey = fileKey();
+          loadedLength = length();
+          SCAN_RECORDS.record(passwordHashes.size());
+          SCAN_BYTES.record(loadedLength);
+        }
+      } finally {
+        indexLock.writeLock().unlock();
+        getDatabaseLock().unlock();
       }
     }
-    return false;
+    indexLock.readLock().lock();
+    try {
+      return passwordHashes.get(username);
+    } finally {
+      indexLock.readLock().unlock();
+    }
+  }
+
+  /*
+   * Replaces the legacy plain-text password of a user with its hash, unless it was changed meanwhile.
+   * The database is rewritten to a temporary file that atomically replaces it,
+   * so that the plain-text password is no longer stored anywhere.
+   */
+  private void rehash(String username, String legacyPassword, String password) throws IOException {
+    String passwordHash = PasswordHash.hash(password);
+    getDatabaseLock().lock();
+    try {
+      if(!legacyPassword.equals(getPasswordHash(username))) return;
+      File rewrittenFile = new File(getPath() + ".rehash");
+      try {
+        try (
+          UserDatabase.Iterator iterator = this.new Iterator();
+          OutputStream out = new BufferedOutputStream(new FileOutputStream(rewrittenFile))
+        ) {
+          while(iterator.hasNext()) {
+            User user = iterator.getNext();
+            if(user.getUsername().equals(username)) user = User.trusted(username, passwordHash);
+            out.write(encodeEntry(user));
+          }
+        }
+        Files.move(rewrittenFile.toPath(), toPath(),
+          StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } catch (IOException | RuntimeException e) {
+        rewrittenFile.delete();
+        throw e;
+      }
+      indexLock.writeLock().lock();
+      try {
+        passwordHashes.put(username, passwordHash);
+        loadedFileKey = fileKey();
+        loadedLength = length();
+      } finally {
+        indexLock.writeLock().unlock();
+      }
+    } finally {
+      getDatabaseLock().unlock();
+    }
+  }
+
+  /*
+   * Checks if the index reflects the current database file.
+   */
+  private boolean isLoaded() throws IOException {
+    return length() == loadedLength && Objects.equals(fileKey(), loadedFileKey);
+  }
+
+  private Object fileKey() throws IOException {
+    return exists() ? Files.readAttributes(toPath(), BasicFileAttributes.class).fileKey() : null;
   }
 }
@@ -0,0 +1,452 @@
+/**
+ * Package containing the HTTP front end of the Board application.
+ */
+package board.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import board.Board;
+import board.metrics.Metrics;
+import board.objects.Ad;
+import board.objects.AdMatch;
+import board.objects.AdRecordWriter;
+import board.service.BoardException;
+import board.service.BoardService;
+
+/**
+ * Class serving the board to any number of users over HTTP, exchanging JSON documents.
+ * A user logs in once and is given a session token, to be sent back
+ * as a bearer token in the Authorization header of the following requests:
+ * <ul>
+ * <li>POST /api/register {"username", "password"}</li>
+ * <li>POST /api/login {"username", "password"}, answering {"token"}</li>
+ * <li>POST /api/logout</li>
+ * <li>GET /api/ads, answering the ads of the user</li>
+ * <li>POST /api/ads {"type", "description", "keywords", "days", "price"}</li>
+ * <li>DELETE /api/ads {"type", "description", "keywords", "price"}</li>
+ * <li>GET /api/matches?max=N, answering the best matches of the ads of the user</li>
+ * </ul>
+ * Failures are answered with {"error", "message"}, the error being
+ * the reason of the failure; unexpected failures are logged and answered
+ * with a generic message.
+ * Every request is handled on its own virtual thread when the runtime provides them,
+ * on a bounded pool of threads otherwise.
+ */
+public class BoardServer {
+
+  /**
+   * Maximum size in bytes of the body of a request.
+   */
+  public static final int MAX_BODY_SIZE = 64 * 1024;
+
+  /**
+   * Maximum number of matches answered to a request.
+   */
+  public static final int MAX_MATCHES = 1000;
+
+  private static final int BACKLOG = 1024;
+
+  private static final Logger LOGGER = Logger.getLogger(BoardServer.class.getName());
+
+  /*
+   * Answer of the requests creating a resource.
+   */
+  private static final Object CREATED = new Object();
+
+  private BoardService boardService;
+  private HttpServer httpServer;
+  private ExecutorService executor;
+  private ScheduledExecutorService sessionEvictor;
+  private SessionStore sessions = new SessionStore();
+
+  /*
+   * Failure of a request, answered with its status and error.
+   */
+  @SuppressWarnings("serial")
+  private static class RequestException extends Exception {
+
+    private int status;
+    private String error;
+
+    private RequestException(int status, String error, String message) {
+      super(message);
+      this.status = status;
+      this.error = error;
+    }
+  }
+
+  /**
+   * Two-argument constructor.
+   *
+   * @param boardService the service of the board to be served.
+   * @param address the address to listen on, port 0 for any free port.
+   * @throws IOException if the server cannot listen on the address.
+   */
+  public BoardServer(BoardService boardService, InetSocketAddress address)
+  throws IOException {
+    this.boardService = boardService;
+    httpServer = HttpServer.create(address, BACKLOG);
+    httpServer.createContext("/api/", this::handle);
+  }
+
+  /**
+   * Starts serving the requests.
+   */
+  public void start() {
+    executor = newExecutor();
+    httpServer.setExecutor(executor);
+    sessionEvictor = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread thread = new Thread(r, "BoardServer session evictor");
+      thread.setDaemon(true);
+      return thread;
+    });
+    sessionEvictor.scheduleWithFixedDelay(sessions::evictExpired, 1, 1, TimeUnit.MINUTES);
+    httpServer.start();
+  }
+
+  /**
+   * Stops serving the requests.
+   * The service of the board is left open, to be closed by whoever opened it.
+   *
+   * @param delay the maximum number of seconds to wait for the requests being handled.
+   */
+  public void stop(int delay) {
+    httpServer.stop(delay);
+    if(sessionEvictor != null) sessionEvictor.shutdownNow();
+    if(executor != null) executor.shutdownNow();
+  }
+
+  /**
+   * Gets the port the server listens on.
+   *
+   * @return the port.
+   */
+  public int getPort() {
+    return httpServer.getAddress().getPort();
+  }
+
+  /**
+   * Serves the board of the application on a port, 8080 by default.
+   *
+   * @param args the port to listen on.
+   * @throws BoardException if a database cannot be opened.
+   * @throws IOException if the server cannot listen on the port.
+   */
+  public static void main(String[] args)
+  throws BoardException, IOException {
+    int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+    Metrics.startExport();
+    BoardService boardService = new BoardService(Board.USR_FILE_PATH, Board.AD_FILE_PATH);
+    BoardServer boardServer = new BoardServer(boardService, new InetSocketAddress(port));
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+      boardServer.stop(1);
+      try {
+        boardService.close();
+      } catch (BoardException e) {
+        // The queued entries are lost along with the process
+      }
+    }, "BoardServer shutdown"));
+    boardServer.start();
+  }
+
+  /*
+   * Uses a thread per request when the runtime has virtual threads,
+   * looked up reflectively so that the application still runs on older runtimes,
+   * and a bounded pool of platform threads otherwise.
+   */
+  private static ExecutorService newExecutor() {
+    try {
+      Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return (ExecutorService)factory.invoke(null);
+    } catch (ReflectiveOperationException e) {
+      AtomicInteger count = new AtomicInteger();
+      int threads = Math.max(64, Runtime.getRuntime().availableProcessors() * 16);
+      return Executors.newFixedThreadPool(threads, r -> {
+        Thread thread = new Thread(r, "BoardServer worker " + count.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    try {
+      Object response = route(exchange);
+      if(response == null)
+        send(exchange, 204, null);
+      else if(response == CREATED)
+        send(exchange, 201, null);
+      else
+        send(exchange, 200, response);
+    } catch (RequestException e) {
+      send(exchange, e.status, error(e.error, e.getMessage()));
+    } catch (BoardException e) {
+      send(exchange, statusOf(e.getReason()), error(e.getReason().name(), e.getMessage()));
+    } catch (RuntimeException e) {
+      LOGGER.log(Level.SEVERE, "Failed to handle " + exchange.getRequestMethod()
+        + " " + exchange.getRequestURI().getPath(), e);
+      send(exchange, 500, error("INTERNAL", "Internal server error"));
+    } finally {
+      exchange.close();
+    }
+  }
+
+  /*
+   * Runs a request, returning the document to be answered,
+   * CREATED if the request created a resource, or null if it has nothing to answer.
+   */
+  private Object route(HttpExchange exchange)
+  throws IOException, RequestException, BoardException {
+    String method = exchange.getRequestMethod();
+    switch(exchange.getRequestURI().getPath()) {
+      case "/api/register":
+        requireMethod(method, "POST");
+        Map<String, Object> registration = readBody(exchange);
+        boardService.register(getString(registration, "username"), getString(registration, "password"));
+        return CREATED;
+      case "/api/login":
+        requireMethod(method, "POST");
+        Map<String, Object> credentials = readBody(exchange);
+        String username = getString(credentials, "username");
+        boardService.login(username, getString(credentials, "password"));
+        Map<String, Object> session = new LinkedHashMap<>();
+        session.put("token", sessions.open(username));
+        return session;
+      case "/api/logout":
+        requireMethod(method, "POST");
+        authenticate(exchange);
+        sessions.close(getToken(exchange));
+        return null;
+      case "/api/ads":
+        return handleAds(exchange, method);
+      case "/api/matches":
+        requireMethod(method, "GET");
+        int max = getMax(exchange.getRequestURI());
+        List<Object> matches = new ArrayList<>();
+        for(AdMatch match : boardService.match(authenticate(exchange), max)) {
+          Map<String, Object> json = toJson(match.getAd());
+          json.put("score", match.getScore());
+          matches.add(json);
+        }
+        return matches;
+      default:
+        throw new RequestException(404, "NOT_FOUND", "No such resource");
+    }
+  }
+
+  private Object handleAds(HttpExchange exchange, String method)
+  throws IOException, RequestException, BoardException {
+    String username = authenticate(exchange);
+    switch(method) {
+      case "GET":
+        List<Object> ads = new ArrayList<>();
+        for(Ad ad : boardService.getAdsOf(username)) {
+          ads.add(toJson(ad));
+        }
+        return ads;
+      case "POST":
+        boardService.saveAd(username, toAd(username, readBody(exchange), true));
+        return CREATED;
+      case "DELETE":
+        if(!boardService.removeAd(username, toAd(username, readBody(exchange), false)))
+          throw new RequestException(404, "NOT_FOUND", "The ad is not saved");
+        return null;
+      default:
+        throw new RequestException(405, "METHOD_NOT_ALLOWED", "Method " + method + " not allowed");
+    }
+  }
+
+  private String authenticate(HttpExchange exchange) throws RequestException {
+    String username = sessions.getUsername(getToken(exchange));
+    if(username == null)
+      throw new RequestException(401, "UNAUTHENTICATED", "Missing or expired session token");
+    return username;
+  }
+
+  private static String getToken(HttpExchange exchange) {
+    String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+    if(authorization == null || !authorization.startsWith("Bearer ")) return null;
+    return authorization.substring("Bearer ".length()).trim();
+  }
+
+  private static void requireMethod(String method, String expected) throws RequestException {
+    if(!method.equals(expected))
+      throw new RequestException(405, "METHOD_NOT_ALLOWED", "Method " + method + " not allowed");
+  }
+
+  private static int getMax(URI uri) throws RequestException {
+    String query = uri.getRawQuery();
+    if(query == null) return Board.MAX_MATCHES;
+    for(String parameter : query.split("&")) {
+      if(!parameter.startsWith("max=")) continue;
+      try {
+        int max = Integer.parseInt(parameter.substring("max=".length()));
+        if(max < 0) throw new NumberFormatException();
+        return Math.min(max, MAX_MATCHES);
+      } catch (NumberFormatException e) {
+        throw new RequestException(400, "BAD_REQUEST", "Invalid max");
+      }
+    }
+    return Board.MAX_MATCHES;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Map<String, Object> readBody(HttpExchange exchange)
+  throws IOException, RequestException {
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
+    try (InputStream in = exchange.getRequestBody()) {
+      int read;
+      while((read = in.read(buffer)) != -1) {
+        body.write(buffer, 0, read);
+        if(body.size() > MAX_BODY_SIZE)
+          throw new RequestException(413, "PAYLOAD_TOO_LARGE", "The request body is too large");
+      }
+    }
+    Object document;
+    try {
+      document = Json.parse(new String(body.toByteArray(), StandardCharsets.UTF_8));
+    } catch (IllegalArgumentException e) {
+      throw new RequestException(400, "BAD_REQUEST", e.getMessage());
+    }
+    if(!(document instanceof Map))
+      throw new RequestException(400, "BAD_REQUEST", "Expected a JSON object");
+    return (Map<String, Object>)document;
+  }
+
+  private static String getString(Map<String, Object> document, String name) throws RequestException {
+    Object value = document.get(name);
+    if(!(value instanceof String))
+      throw new RequestException(400, "BAD_REQUEST", "Missing or invalid " + name);
+    return (String)value;
+  }
+
+  private static double getNumber(Map<String, Object> document, String name) throws RequestException {
+    Object value = document.get(name);
+    if(!(value instanceof Double) || ((Double)value).isInfinite())
+      throw new RequestException(400, "BAD_REQUEST", "Missing or invalid " + name);
+    return (Double)value;
+  }
+
+  private static Ad toAd(String username, Map<String, Object> document, boolean withDays)
+  throws RequestException {
+    String type = getString(document, "type");
+    if(!type.equals("BUY") && !type.equals("SELL"))
+      throw new RequestException(400, "BAD_REQUEST", "Missing or invalid type");
+    String description = getString(document, "description");
+    String keywords;
+    Object value = document.get("keywords");
+    if(value instanceof List) {
+      List<String> list = new ArrayList<>();
+      for(Object keyword : (List<?>)value) {
+        if(!(keyword instanceof String))
+          throw new RequestException(400, "BAD_REQUEST", "Missing or invalid keywords");
+        list.add((String)keyword);
+      }
+      keywords = String.join(",", list);
+    } else {
+      keywords = getString(document, "keywords");
+    }
+    long days = 0;
+    if(withDays) {
+      double number = getNumber(document, "days");
+      if(number < 0 || number != Math.rint(number))
+        throw new RequestException(400, "BAD_REQUEST", "Missing or invalid days");
+      if(number > maxDays())
+        throw new RequestException(400, "BAD_REQUEST", "Missing or invalid days");
+      days = (long)number;
+    }
+    Ad ad = new Ad(username, Ad.AdType.parse(type), description, keywords, days, getNumber(document, "price"));
+    if(!AdRecordWriter.canWrite(ad))
+      throw new RequestException(400, "BAD_REQUEST", "Too many keywords or fields too long");
+    return ad;
+  }
+
+  /*
+   * Gets the largest number of days an ad can last, so that its expiration
+   * still fits in an Instant and can be shown as a date in any time zone.
+   */
+  private static long maxDays() {
+    Instant lastDate = LocalDateTime.MAX.toInstant(ZoneOffset.MAX);
+    return ChronoUnit.DAYS.between(Instant.now(), lastDate) - 1;
+  }
+
+  private static Map<String, Object> toJson(Ad ad) {
+    Map<String, Object> json = new LinkedHashMap<>();
+    json.put("owner", ad.getUsername());
+    json.put("type", ad.getType().name());
+    json.put("description", ad.getDescription());
+    List<Object> keywords = new ArrayList<>();
+    for(String keyword : ad.getKeywords()) {
+      keywords.add(keyword);
+    }
+    json.put("keywords", keywords);
+    json.put("expiration", ad.getExpirationDate().toString());
+    json.put("remainingDays", ad.getRemainingDays());
+    json.put("price", ad.getPrice());
+    return json;
+  }
+
+  private static Map<String, Object> error(String error, String message) {
+    Map<String, Object> json = new LinkedHashMap<>();
+    json.put("error", error);
+    json.put("message", message);
+    return json;
+  }
+
+  private static int statusOf(BoardException.Reason reason) {
+    switch(reason) {
+      case INVALID_CREDENTIALS:
+        return 401;
+      case INVALID_USER:
+        return 400;
+      case USERNAME_TAKEN:
+      case AD_ALREADY_SAVED:
+        return 409;
+      case NOT_OWNER:
+        return 403;
+      case CANCELLED:
+        return 503;
+      default:
+        return 500;
+    }
+  }
+
+  private static void send(HttpExchange exchange, int status, Object document) throws IOException {
+    if(document == null) {
+      exchange.sendResponseHeaders(status, -1);
+      return;
+    }
+    byte[] body = Json.write(document).getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+    exchange.sendResponseHeaders(status, body.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(body);
+    }
+  }
+}
@@ -0,0 +1,272 @@
+/**
+ * Package containing the HTTP front end of the Board application.
+ */
+package board.server;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class reading and writing the JSON documents exchanged by the BoardServer.
+ * Objects are read as Maps, arrays as Lists, numbers as Doubles,
+ * and the same types, plus any Number, are written back.
+ */
+final class Json {
+
+  private static final int MAX_DEPTH = 32;
+
+  private String text;
+  private int position;
+  private int depth;
+
+  private Json(String text) {
+    this.text = text;
+  }
+
+  /**
+   * Parses a JSON document.
+   *
+   * @param text the document.
+   * @return the value of the document.
+   * @throws IllegalArgumentException if the document is not valid JSON.
+   */
+  static Object parse(String text) throws IllegalArgumentException {
+    Json json = new Json(text);
+    Object value = json.readValue();
+    json.skipWhitespace();
+    if(json.position != text.length()) throw json.error("Unexpected trailing characters");
+    return value;
+  }
+
+  /**
+   * Writes a value as a JSON document.
+   *
+   * @param value a Map, Iterable, String, Number, Boolean or null.
+   * @return the document.
+   */
+  static String write(Object value) {
+    StringBuilder builder = new StringBuilder();
+    write(value, builder);
+    return builder.toString();
+  }
+
+  private static void write(Object value, StringBuilder builder) {
+    if(value == null) {
+      builder.append("null");
+    } else if(value instanceof String) {
+      writeString((String)value, builder);
+    } else if(value instanceof Number || value instanceof Boolean) {
+      builder.append(value);
+    } else if(value instanceof Map) {
+      builder.append('{');
+      Iterator<? extends Map.Entry<?, ?>> entries = ((Map<?, ?>)value).entrySet().iterator();
+      while(entries.hasNext()) {
+        Map.Entry<?, ?> entry = entries.next();
+        writeString(String.valueOf(entry.getKey()), builder);
+        builder.append(':');
+        write(entry.getValue(), builder);
+        if(entries.hasNext()) builder.append(',');
+      }
+      builder.append('}');
+    } else if(value instanceof Iterable) {
+      builder.append('[');
+      Iterator<?> elements = ((Iterable<?>)value).iterator();
+      while(elements.hasNext()) {
+        write(elements.next(), builder);
+        if(elements.hasNext()) builder.append(',');
+      }
+      builder.append(']');
+    } else {
+      writeString(value.toString(), builder);
+    }
+  }
+
+  private static void writeString(String string, StringBuilder builder) {
+    builder.append('"');
+    for (int i = 0; i < string.length(); i++) {
+      char c = string.charAt(i);
+      switch(c) {
+        case '"':
+          builder.append("\\\"");
+          break;
+        case '\\':
+          builder.append("\\\\");
+          break;
+        case '\n':
+          builder.append("\\n");
+          break;
+        case '\r':
+          builder.append("\\r");
+          break;
+        case '\t':
+          builder.append("\\t");
+          break;
+        default:
+          if(c < 0x20)
+            builder.append(String.format("\\u%04x", (int)c));
+          else
+            builder.append(c);
+      }
+    }
+    builder.append('"');
+  }
+
+  private Object readValue() {
+    skipWhitespace();
+    if(position >= text.length()) throw error("Unexpected end of document");
+    char c = text.charAt(position);
+    if((c == '{' || c == '[') && depth == MAX_DEPTH) throw error("Document nested too deeply");
+    switch(c) {
+      case '{':
+        depth++;
+        Map<String, Object> object = readObject();
+        depth--;
+        return object;
+      case '[':
+        depth++;
+        List<Object> array = readArray();
+        depth--;
+        return array;
+      case '"':
+        return readString();
+      case 't':
+        return readLiteral("true", Boolean.TRUE);
+      case 'f':
+        return readLiteral("false", Boolean.FALSE);
+      case 'n':
+        return readLiteral("null", null);
+      default:
+        return readNumber();
+    }
+  }
+
+  private Map<String, Object> readObject() {
+    Map<String, Object> object = new LinkedHashMap<>();
+    position++;
+    skipWhitespace();
+    if(peek() == '}') {
+      position++;
+      return object;
+    }
+    while(true) {
+      skipWhitespace();
+      if(peek() != '"') throw error("Expected a member name");
+      String name = readString();
+      skipWhitespace();
+      expect(':');
+      object.put(name, readValue());
+      skipWhitespace();
+      if(peek() == ',') {
+        position++;
+      } else {
+        expect('}');
+        return object;
+      }
+    }
+  }
+
+  private List<Object> readArray() {
+    List<Object> array = new ArrayList<>();
+    position++;
+    skipWhitespace();
+    if(peek() == ']') {
+      position++;
+      return array;
+    }
+    while(true) {
+      array.add(readValue());
+      skipWhitespace();
+      if(peek() == ',') {
+        position++;
+      } else {
+        expect(']');
+        return array;
+      }
+    }
+  }
+
+  private String readString() {
+    StringBuilder builder = new StringBuilder();
+    position++;
+    while(true) {
+      if(position >= text.length()) throw error("Unterminated string");
+      char c = text.charAt(position++);
+      if(c == '"') return builder.toString();
+      if(c != '\\') {
+        builder.append(c);
+        continue;
+      }
+      if(position >= text.length()) throw error("Unterminated string");
+      char escaped = text.charAt(position++);
+      switch(escaped) {
+        case 'b':
+          builder.append('\b');
+          break;
+        case 'f':
+          builder.append('\f');
+          break;
+        case 'n':
+          builder.append('\n');
+          break;
+        case 'r':
+          builder.append('\r');
+          break;
+        case 't':
+          builder.append('\t');
+          break;
+        case 'u':
+          if(position + 4 > text.length()) throw error("Invalid unicode escape");
+          try {
+            builder.append((char)Integer.parseInt(text.substring(position, position + 4), 16));
+          } catch (NumberFormatException e) {
+            throw error("Invalid unicode escape");
+          }
+          position += 4;
+          break;
+        default:
+          builder.append(escaped);
+      }
+    }
+  }
+
+  private Double readNumber() {
+    int start = position;
+    while(position < text.length() && "+-0123456789.eE".indexOf(text.charAt(position)) >= 0) {
+      position++;
+    }
+    try {
+      return Double.valueOf(text.substring(start, position));
+    } catch (NumberFormatException e) {
+      throw error("Invalid value");
+    }
+  }
+
+  private Object readLiteral(String literal, Object value) {
+    if(!text.startsWith(literal, position)) throw error("Invalid value");
+    position += literal.length();
+    return value;
+  }
+
+  private void skipWhitespace() {
+    while(position < text.length() && Character.isWhitespace(text.charAt(position))) {
+      position++;
+    }
+  }
+
+  private char peek() {
+    if(position >= text.length()) throw error("Unexpected end of document");
+    return text.charAt(position);
+  }
+
+  private void expect(char c) {
+    if(peek() != c) throw error("Expected '" + c + "'");
+    position++;
+  }
+
+  private IllegalArgumentException error(String message) {
+    return new IllegalArgumentException(message + " at position " + position);
+  }
+}
@@ -0,0 +1,89 @@
+/**
+ * Package containing the HTTP front end of the Board application.
+ */
+package board.server;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Class keeping the sessions of the users logged in through the BoardServer.
+ * A session is identified by a random token, handed to the user at login
+ * and sent back with each request, and it expires after IDLE_TIMEOUT_MILLIS
+ * without requests.
+ */
+final class SessionStore {
+
+  /**
+   * Time after which an unused session expires.
+   */
+  static final long IDLE_TIMEOUT_MILLIS = 30 * 60 * 1000;
+
+  private static final int TOKEN_BYTES = 32;
+
+  private static final class Session {
+
+    private String username;
+    private volatile long lastAccess;
+
+    private Session(String username, long lastAccess) {
+      this.username = username;
+      this.lastAccess = lastAccess;
+    }
+  }
+
+  private SecureRandom random = new SecureRandom();
+  private ConcurrentHashMap<String, Session> sessions = new ConcurrentHashMap<>();
+
+  /**
+   * Opens a session for a user.
+   *
+   * @param username the user logged in.
+   * @return the token of the session.
+   */
+  String open(String username) {
+    byte[] bytes = new byte[TOKEN_BYTES];
+    random.nextBytes(bytes);
+    String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    sessions.put(token, new Session(username, System.currentTimeMillis()));
+    return token;
+  }
+
+  /**
+   * Gets the user of a session, renewing the session.
+   *
+   * @param token the token of the session.
+   * @return the user of the session, null if the session does not exist or expired.
+   */
+  String getUsername(String token) {
+    if(token == null) return null;
+    Session session = sessions.get(token);
+    if(session == null) return null;
+    long now = System.currentTimeMillis();
+    if(now - session.lastAccess > IDLE_TIMEOUT_MILLIS) {
+      sessions.remove(token, session);
+      return null;
+    }
+    session.lastAccess = now;
+    return session.username;
+  }
+
+  /**
+   * Closes a session.
+   *
+   * @param token the token of the session.
+   * @return true if the session was open.
+   */
+  boolean close(String token) {
+    return token != null && sessions.remove(token) != null;
+  }
+
+  /**
+   * Removes the expired sessions.
+   */
+  void evictExpired() {
+    long now = System.currentTimeMillis();
+    sessions.values().removeIf(session -> now - session.lastAccess > IDLE_TIMEOUT_MILLIS);
+  }
+}
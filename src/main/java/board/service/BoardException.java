@@ -0,0 +1,80 @@
+/**
+ * Package containing the headless service of the Board application.
+ */
+package board.service;
+
+/**
+ * Exception thrown by the BoardService, carrying the reason of the failure
+ * so that every client can react to it in its own way.
+ */
+@SuppressWarnings("serial")
+public class BoardException extends Exception {
+
+  /**
+   * Enumerator designed to represent the reason of a failure.
+   */
+  public enum Reason {
+    /**
+     * The username and/or password are invalid.
+     */
+    INVALID_CREDENTIALS,
+    /**
+     * The username or password contain whitespaces, are empty or null.
+     */
+    INVALID_USER,
+    /**
+     * The username is already taken.
+     */
+    USERNAME_TAKEN,
+    /**
+     * The ad is already contained in the board.
+     */
+    AD_ALREADY_SAVED,
+    /**
+     * The ad is owned by another user.
+     */
+    NOT_OWNER,
+    /**
+     * The operation was cancelled.
+     */
+    CANCELLED,
+    /**
+     * A database file cannot be read or written.
+     */
+    STORAGE
+  }
+
+  private Reason reason;
+
+  /**
+   * Two-argument constructor.
+   * 
+   * @param reason the reason of the failure.
+   * @param message the detail message.
+   */
+  public BoardException(Reason reason, String message) {
+    super(message);
+    this.reason = reason;
+  }
+
+  /**
+   * Three-argument constructor.
+   * 
+   * @param reason the reason of the failure.
+   * @param message the detail message.
+   * @param cause the cause of the failure.
+   */
+  public BoardException(Reason reason, String message, Throwable cause) {
+    super(message, cause);
+    this.reason = reason;
+  }
+
+  /**
+   * Gets the reason of the failure.
+   * 
+   * @return the reason.
+   */
+  public Reason getReason() {
+    return reason;
+  }
+}
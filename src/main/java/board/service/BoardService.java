@@ -0,0 +1,246 @@
+/**
+ * Package containing the headless service of the Board application.
+ */
+package board.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+
+import board.objects.Ad;
+import board.objects.AdCursor;
+import board.objects.AdDatabase;
+import board.objects.AdMatch;
+import board.objects.ProgressListener;
+import board.objects.User;
+import board.objects.UserDatabase;
+import board.service.BoardException.Reason;
+
+/**
+ * Class representing the operations of the Board application,
+ * independent of any user interface.
+ * Every operation is given the user it acts for, so a single service
+ * can be shared by any number of users and threads; the results are returned
+ * and the failures are thrown as BoardExceptions carrying their reason.
+ * The service is closed once done with it, closing its databases.
+ */
+public class BoardService implements AutoCloseable {
+
+  private UserDatabase userDatabase;
+  private AdDatabase adDatabase;
+
+  /**
+   * Two-argument constructor.
+   *
+   * @param userFilePath the path of the user database.
+   * @param adFilePath the path of the ad database.
+   * @throws BoardException if a database cannot be opened.
+   */
+  public BoardService(String userFilePath, String adFilePath) throws BoardException {
+    try {
+      userDatabase = new UserDatabase(userFilePath);
+    } catch (IOException e) {
+      throw storageFailure(e);
+    }
+    try {
+      adDatabase = new AdDatabase(adFilePath);
+    } catch (IOException e) {
+      try {
+        userDatabase.close();
+      } catch (IOException closeFailure) {
+        e.addSuppressed(closeFailure);
+      }
+      throw storageFailure(e);
+    }
+  }
+
+  /**
+   * Authenticates a user.
+   *
+   * @param username the username of the user.
+   * @param password the password of the user.
+   * @throws BoardException if the credentials are invalid
+   * or the user database cannot be read.
+   */
+  public void login(String username, String password) throws BoardException {
+    try {
+      userDatabase.login(username, password);
+    } catch (IllegalArgumentException e) {
+      throw new BoardException(Reason.INVALID_CREDENTIALS, e.getMessage(), e);
+    } catch (IOException e) {
+      throw storageFailure(e);
+    }
+  }
+
+  /**
+   * Registers a new user.
+   *
+   * @param username the username of the user.
+   * @param password the password of the user.
+   * @throws BoardException if the credentials contain whitespaces, are empty or null,
+   * if the username is already taken or the user database cannot be written.
+   */
+  public void register(String username, String password) throws BoardException {
+    User user;
+    try {
+      user = new User(username, password);
+    } catch (IllegalArgumentException e) {
+      throw new BoardException(Reason.INVALID_USER, e.getMessage(), e);
+    }
+    try {
+      userDatabase.registerEntry(user);
+    } catch (IllegalArgumentException e) {
+      throw new BoardException(Reason.USERNAME_TAKEN, e.getMessage(), e);
+    } catch (IOException e) {
+      throw storageFailure(e);
+    }
+  }
+
+  /**
+   * Saves a new ad of a user.
+   *
+   * @param username the user saving the ad.
+   * @param ad the ad to be saved.
+   * @throws BoardException if the ad is owned by another user,
+   * is already saved or the ad database cannot be written.
+   */
+  public void saveAd(String username, Ad ad) throws BoardException {
+    checkOwner(username, ad);
+    try {
+      adDatabase.registerEntry(ad);
+    } catch (IllegalArgumentException e) {
+      throw new BoardException(Reason.AD_ALREADY_SAVED, e.getMessage(), e);
+    } catch (IOException e) {
+      throw storageFailure(e);
+    }
+  }
+
+  /**
+   * Removes an ad of a user.
+   *
+   * @param username the user removing the ad.
+   * @param ad the ad to be removed.
+   * @return true if the ad was saved and has been removed.
+   * @throws BoardException if the ad is owned by another user
+   * or the ad database cannot be written.
+   */
+  public boolean removeAd(String username, Ad ad) throws BoardException {
+    checkOwner(username, ad);
+    try {
+      return adDatabase.removeAd(ad);
+    } catch (IOException e) {
+      throw storageFailure(e);
+    }
+  }
+
+  /**
+   * Gets every ad of the board.
+   *
+   * @return the list of ads.
+   * @throws BoardException if the ad database cannot be read.
+   */
+  public List<Ad> getAds() throws BoardException {
+    try {
+      return adDatabase.getAds();
+    } catch (UncheckedIOException e) {
+      throw storageFailure(e.getCause());
+    }
+  }
+
+  /**
+   * Gets the ads of a user.
+   *
+   * @param username the owner of the ads.
+   * @return the list of ads owned by the user.
+   * @throws BoardException if the ad database cannot be read.
+   */
+  public List<Ad> getAdsOf(String username) throws BoardException {
+    try {
+      return adDatabase.getAdsOf(username);
+    } catch (UncheckedIOException e) {
+      throw storageFailure(e.getCause());
+    }
+  }
+
+  /**
+   * Gets the ads of the other users that best match the ads of a user.
+   *
+   * @param username the user whose ads are matched.
+   * @param maxMatches the maximum number of matches to be returned.
+   * @return the list of matches, sorted by decreasing score.
+   * @throws BoardException if the ad database cannot be read.
+   */
+  public List<AdMatch> match(String username, int maxMatches) throws BoardException {
+    try {
+      return adDatabase.getMatchesOf(username, maxMatches);
+    } catch (UncheckedIOException e) {
+      throw storageFailure(e.getCause());
+    }
+  }
+
+  /**
+   * Gets a cursor over every match of the ads of a user, best first.
+   *
+   * @param username the user whose ads are matched.
+   * @param progress the listener to the progress of the matching.
+   * @return the cursor over the matched ads.
+   * @throws BoardException if the thread running the matching is interrupted
+   * or the ad database cannot be read.
+   */
+  public AdCursor matchCursor(String username, ProgressListener progress) throws BoardException {
+    try {
+      return adDatabase.getMatchCursor(username, progress);
+    } catch (CancellationException e) {
+      throw new BoardException(Reason.CANCELLED, e.getMessage(), e);
+    } catch (UncheckedIOException e) {
+      throw storageFailure(e.getCause());
+    }
+  }
+
+  /**
+   * Gets the user database of the board.
+   *
+   * @return the user database.
+   */
+  public UserDatabase getUserDatabase() {
+    return userDatabase;
+  }
+
+  /**
+   * Gets the ad database of the board.
+   *
+   * @return the ad database.
+   */
+  public AdDatabase getAdDatabase() {
+    return adDatabase;
+  }
+
+  /**
+   * Closes the databases of the board.
+   *
+   * @throws BoardException if the entries queued for a database cannot be written.
+   */
+  @Override
+  public void close() throws BoardException {
+    try {
+      try {
+        adDatabase.close();
+      } finally {
+        userDatabase.close();
+      }
+    } catch (IOException e) {
+      throw storageFailure(e);
+    }
+  }
+
+  private void checkOwner(String username, Ad ad) throws BoardException {
+    if(!Objects.equals(ad.getUsername(), username))
+      throw new BoardException(Reason.NOT_OWNER, "The ad is owned by another user");
+  }
+
+  private BoardException storageFailure(IOException e) {
+    return new BoardException(Reason.STORAGE, e.getMessage(), e);
+  }
+}
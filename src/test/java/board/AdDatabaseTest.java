@@ -6,22 +6,56 @@ package board;
 import static org.junit.Assert.*;
 
 import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
 
+import org.junit.After;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
+import board.metrics.Metrics;
+import board.objects.AdCursor;
 import board.objects.AdDatabase;
+import board.objects.AdDatabaseMigrator;
+import board.objects.AdMatch;
+import board.objects.AdRecordReader;
+import board.objects.AdRecordWriter;
+import board.objects.AdSpliterator;
+import board.objects.ExpirySweep;
+import board.objects.LogWriter;
+import board.objects.PagedAdTableModel;
+import board.objects.ProgressListener;
 import board.objects.Ad;
 
 public class AdDatabaseTest {
 
   @Rule
   public ExpectedException expectedException = ExpectedException.none();	
+
+  private List<AdDatabase> adDatabases = new ArrayList<>();
+
+  @After
+  public void tearDown() throws IOException {
+    for (AdDatabase adDatabase : adDatabases) {
+      adDatabase.close();
+    }
+  }
   
   @Test
   public void clearDatabaseTest() throws IOException, IllegalArgumentException {	
-    AdDatabase adDatabase = new AdDatabase(System.getProperty("user.home") + "/Desktop" + "/AdDB");
+    AdDatabase adDatabase = open(System.getProperty("user.home") + "/Desktop" + "/AdDB");
     adDatabase.clearDatabase();
     adDatabase.registerEntry(new Ad("marco", Ad.AdType.BUY, "adssad", "asdsa,asds,fad", 60, 300));
     adDatabase.clearDatabase();
@@ -33,7 +67,7 @@ public class AdDatabaseTest {
     expectedException.expect(IllegalArgumentException.class);
     expectedException.expectMessage("Ad already contained");
     
-    AdDatabase adDatabase = new AdDatabase(System.getProperty("user.home") + "/Desktop" + "/AdDB");
+    AdDatabase adDatabase = open(System.getProperty("user.home") + "/Desktop" + "/AdDB");
     adDatabase.clearDatabase();
     adDatabase.registerEntry(new Ad("marco", Ad.AdType.BUY, "adssad", "asdsa,asds,fad", 60, 300));
     adDatabase.registerEntry(new Ad("marco", Ad.AdType.BUY, "adssad", "asdsa,asds,fad", 60, 300));
@@ -41,7 +75,7 @@ public class AdDatabaseTest {
 
   @Test
   public void removeAdTest() throws IOException, IllegalArgumentException {
-    AdDatabase adDatabase = new AdDatabase(System.getProperty("user.home") + "/Desktop" + "/AdDB");
+    AdDatabase adDatabase = open(System.getProperty("user.home") + "/Desktop" + "/AdDB");
     adDatabase.clearDatabase();
     adDatabase.registerEntry(new Ad("marco", Ad.AdType.BUY, "adssad", "asdsa,asds,fad", 60, 300));
     adDatabase.removeAd(new Ad("marco", Ad.AdType.BUY, "adssad", "asdsa,asds,fad", 60, 300));
@@ -50,7 +84,7 @@ public class AdDatabaseTest {
 
   @Test
   public void containsEntryTest() throws IOException, IllegalArgumentException {
-    AdDatabase adDatabase = new AdDatabase(System.getProperty("user.home") + "/Desktop" + "/AdDB");
+    AdDatabase adDatabase = open(System.getProperty("user.home") + "/Desktop" + "/AdDB");
     adDatabase.clearDatabase();
     Ad ad = new Ad("marco", Ad.AdType.BUY, "adssad", "asdsa,asds,fad", 60, 300);		
     adDatabase.registerEntry(ad);
@@ -59,11 +93,347 @@ public class AdDatabaseTest {
 
   @Test
   public void removeExpiredAdsTest() throws IOException, IllegalArgumentException {
-    AdDatabase adDatabase = new AdDatabase(System.getProperty("user.home") + "/Desktop" + "/AdDB");
+    AdDatabase adDatabase = open(System.getProperty("user.home") + "/Desktop" + "/AdDB");
     adDatabase.clearDatabase();
     Ad ad = new Ad("marco", Ad.AdType.BUY, "adssad", "asdsa,asds,fad", -10, 300);
     adDatabase.registerEntry(ad);
-    AdDatabase newAdDatabase = new AdDatabase(System.getProperty("user.home") + "/Desktop" + "/AdDB");
+    AdDatabase newAdDatabase = open(System.getProperty("user.home") + "/Desktop" + "/AdDB");
     assertFalse(newAdDatabase.containsEntry(ad));
   }
+
+  @Test
+  public void getAdsOfTest() throws IOException, IllegalArgumentException {
+    AdDatabase adDatabase = open(System.getProperty("user.home") + "/Desktop" + "/AdDB");
+    adDatabase.clearDatabase();
+    Ad ad = new Ad("marco", Ad.AdType.BUY, "adssad", "asdsa,asds,fad", 60, 300);
+    adDatabase.registerEntry(ad);
+    adDatabase.registerEntry(new Ad("luca", Ad.AdType.SELL, "adssad", "asdsa,asds,fad", 60, 300));
+    AdDatabase newAdDatabase = open(System.getProperty("user.home") + "/Desktop" + "/AdDB");
+    assertEquals(2, newAdDatabase.getAds().size());
+    assertEquals(1, newAdDatabase.getAdsOf("marco").size());
+    assertTrue(newAdDatabase.getAdsOf("marco").contains(ad));
+  }
+
+  @Test
+  public void compactTest() throws IOException, IllegalArgumentException {
+    AdDatabase adDatabase = open(System.getProperty("user.home") + "/Desktop" + "/AdDB");
+    adDatabase.clearDatabase();
+    Ad ad = new Ad("marco", Ad.AdType.BUY, "adssad", "asdsa,asds,fad", 60, 300);
+    Ad removedAd = new Ad("marco", Ad.AdType.SELL, "adssad", "asdsa,asds,fad", 60, 300);
+    adDatabase.registerEntry(ad);
+    adDatabase.registerEntry(removedAd);
+    adDatabase.removeAd(removedAd);
+    assertFalse(open(System.getProperty("user.home") + "/Desktop" + "/AdDB").containsEntry(removedAd));
+    long logLength = adDatabase.length();
+    adDatabase.compact();
+    assertTrue(adDatabase.length() < logLength);
+    AdDatabase newAdDatabase = open(System.getProperty("user.home") + "/Desktop" + "/AdDB");
+    assertTrue(newAdDatabase.containsEntry(ad));
+    assertFalse(newAdDatabase.containsEntry(removedAd));
+  }
+
+  @Test
+  public void expirySweepTest() throws IOException, IllegalArgumentException {
+    AdDatabase adDatabase = open(System.getProperty("user.home") + "/Desktop" + "/AdDB");
+    adDatabase.clearDatabase();
+    Ad ad = new Ad("marco", Ad.AdType.BUY, "adssad", "asdsa,asds,fad", 60, 300);
+    adDatabase.registerEntry(ad);
+    adDatabase.registerEntry(new Ad("marco", Ad.AdType.BUY, "adssad", "asdsa", -10, 300));
+    adDatabase.registerEntry(new Ad("marco", Ad.AdType.SELL, "adssad", "asdsa", -5, 300));
+    ExpirySweep expirySweep = adDatabase.removeExpiredAds();
+    assertEquals(2, expirySweep.getRemovedAds());
+    assertEquals(0, adDatabase.removeExpiredAds().getRemovedAds());
+    assertEquals(1, adDatabase.getAds().size());
+    assertEquals(1, open(System.getProperty("user.home") + "/Desktop" + "/AdDB").getAds().size());
+  }
+
+  @Test
+  public void expiryEvictionTest() throws IOException, IllegalArgumentException, InterruptedException {
+    AdDatabase adDatabase = open(System.getProperty("user.home") + "/Desktop" + "/AdDB");
+    adDatabase.clearDatabase();
+    Ad ad = new Ad("marco", Ad.AdType.BUY, "adssad", "asdsa,asds,fad", -10, 300);
+    adDatabase.registerEntry(ad);
+    for (int i = 0; i < 200 && adDatabase.containsEntry(ad); i++) {
+      Thread.sleep(10);
+    }
+    assertFalse(adDatabase.containsEntry(ad));
+  }
+
+  @Test
+  public void reloadedExpirationTest() throws IOException, IllegalArgumentException {
+    String path = System.getProperty("user.home") + "/Desktop" + "/AdDB";
+    AdDatabase adDatabase = open(path);
+    adDatabase.clearDatabase();
+    Ad ad = new Ad("marco", Ad.AdType.BUY, "adssad", "asdsa,asds,fad", 60, 300);
+    adDatabase.registerEntry(ad);
+    Ad reloadedAd = open(path).getAds().get(0);
+    assertEquals(ad.getExpiration(), reloadedAd.getExpiration());
+    assertEquals(ad.getRemainingDays(), reloadedAd.getRemainingDays());
+  }
+
+  @Test
+  public void getMatchesOfTest() throws IOException, IllegalArgumentException {
+    AdDatabase adDatabase = open(System.getProperty("user.home") + "/Desktop" + "/AdDB");
+    adDatabase.clearDatabase();
+    adDatabase.registerEntry(new Ad("marco", Ad.AdType.BUY, "vespa", "moto,vespa", 60, 300));
+    Ad match = new Ad("luca", Ad.AdType.SELL, "old vespa", "Vespa, moto", 60, 250);
+    Ad partialMatch = new Ad("anna", Ad.AdType.SELL, "helmet", "moto,helmet", 60, 50);
+    adDatabase.registerEntry(partialMatch);
+    adDatabase.registerEntry(match);
+    adDatabase.registerEntry(new Ad("luca", Ad.AdType.BUY, "vespa", "moto,vespa", 60, 300));
+    adDatabase.registerEntry(new Ad("luca", Ad.AdType.SELL, "car", "car", 60, 300));
+    List<AdMatch> matches = adDatabase.getMatchesOf("marco", 10);
+    assertEquals(2, matches.size());
+    assertEquals(match, matches.get(0).getAd());
+    assertEquals(1, matches.get(0).getScore(), 0.00001);
+    assertEquals(partialMatch, matches.get(1).getAd());
+    assertEquals(1.0 / 3, matches.get(1).getScore(), 0.00001);
+    assertEquals(1, adDatabase.getMatchesOf("marco", 1).size());
+    adDatabase.removeAd(match);
+    assertEquals(partialMatch, adDatabase.getMatchesOf("marco", 1).get(0).getAd());
+  }
+
+  @Test
+  public void concurrentRegisterEntryTest() throws IOException, IllegalArgumentException, InterruptedException {
+    String filePath = System.getProperty("user.home") + "/Desktop" + "/AdDB";
+    AdDatabase adDatabase = open(filePath);
+    adDatabase.clearDatabase();
+    adDatabase.setDurability(LogWriter.Durability.BATCH);
+    Thread[] threads = new Thread[8];
+    IOException[] errors = new IOException[threads.length];
+    for (int i = 0; i < threads.length; i++) {
+      int thread = i;
+      threads[i] = new Thread(() -> {
+        try {
+          for (int j = 0; j < 16; j++) {
+            adDatabase.registerEntry(new Ad("marco", Ad.AdType.BUY, "ad" + thread + "_" + j, "asdsa,asds,fad", 60, 300));
+          }
+        } catch (IOException e) {
+          errors[thread] = e;
+        }
+      });
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    for (IOException error : errors) {
+      assertNull(error);
+    }
+    assertEquals(128, open(filePath).getAds().size());
+  }
+
+  @Test
+  public void sharedFileTest() throws IOException, IllegalArgumentException {
+    String filePath = System.getProperty("user.home") + "/Desktop" + "/AdDB";
+    AdDatabase adDatabase = open(filePath);
+    adDatabase.clearDatabase();
+    AdDatabase otherAdDatabase = open(filePath);
+    Ad ad = new Ad("marco", Ad.AdType.BUY, "adssad", "asdsa,asds,fad", 60, 300);
+    adDatabase.registerEntry(ad);
+    assertTrue(otherAdDatabase.containsEntry(ad));
+    assertTrue(otherAdDatabase.removeAd(ad));
+    assertFalse(adDatabase.containsEntry(ad));
+    adDatabase.registerEntry(ad);
+    otherAdDatabase.compact();
+    adDatabase.registerEntry(new Ad("luca", Ad.AdType.SELL, "adssad", "asdsa", 60, 300));
+    assertEquals(2, otherAdDatabase.getAds().size());
+  }
+
+  @Test
+  public void ownRecordsTest() throws IOException, IllegalArgumentException {
+    AdDatabase adDatabase = open(System.getProperty("user.home") + "/Desktop" + "/AdDB");
+    adDatabase.clearDatabase();
+    Ad ad = new Ad("marco", Ad.AdType.BUY, "adssad", "asdsa,asds,fad", 60, 300);
+    long replays = Metrics.histogram("ad.scan.records").snapshot().getCount();
+    adDatabase.registerEntry(ad);
+    adDatabase.removeAd(ad);
+    assertFalse(adDatabase.containsEntry(ad));
+    adDatabase.registerEntry(new Ad("luca", Ad.AdType.SELL, "adssad", "asdsa", 60, 300));
+    assertEquals(1, adDatabase.getAds().size());
+    assertEquals(replays, Metrics.histogram("ad.scan.records").snapshot().getCount());
+  }
+
+  @Test
+  public void catchUpFailureTest() throws IOException, IllegalArgumentException {
+    String filePath = System.getProperty("user.home") + "/Desktop" + "/AdDBDeleted";
+    AdDatabase adDatabase = open(filePath);
+    Files.delete(Paths.get(filePath));
+    long failures = Metrics.counter("ad.catchUp.failures").get();
+    try {
+      adDatabase.getAds();
+      fail();
+    } catch (UncheckedIOException e) {
+      // Expected
+    }
+    assertEquals(failures + 1, Metrics.counter("ad.catchUp.failures").get());
+  }
+
+  @Test
+  public void matchCursorTest() throws IOException, IllegalArgumentException {
+    AdDatabase adDatabase = open(System.getProperty("user.home") + "/Desktop" + "/AdDB");
+    adDatabase.clearDatabase();
+    adDatabase.registerEntry(new Ad("marco", Ad.AdType.BUY, "bike", "bike", 60, 300));
+    for (int i = 0; i < 1000; i++) {
+      adDatabase.registerEntry(new Ad("luca", Ad.AdType.SELL, "bike " + i, "bike", 60, i));
+    }
+    AdCursor cursor = adDatabase.getMatchCursor("marco", ProgressListener.NONE);
+    assertEquals(1000, cursor.size());
+    assertEquals(10, cursor.fetch(990, 50).size());
+    PagedAdTableModel tableModel = new PagedAdTableModel(cursor);
+    assertEquals(1000, tableModel.getRowCount());
+    for (int row = 0; row < tableModel.getRowCount(); row++) {
+      assertNotNull(tableModel.getValueAt(row, 1));
+    }
+    assertEquals(PagedAdTableModel.MAX_PAGES, tableModel.getPageCount());
+    Ad bestMatch = cursor.fetch(0, 1).get(0);
+    adDatabase.removeAd(bestMatch);
+    assertEquals(1000, cursor.size());
+    assertEquals(bestMatch, cursor.fetch(0, 1).get(0));
+    assertEquals(999, adDatabase.getMatchCursor("marco", ProgressListener.NONE).size());
+  }
+
+  @Test
+  public void parallelScanTest() throws IOException, IllegalArgumentException {
+    String path = System.getProperty("user.home") + "/Desktop" + "/ScanAdDB";
+    AdDatabase adDatabase = open(path);
+    adDatabase.clearDatabase();
+    for (int i = 0; i < 3 * AdSpliterator.CHUNK_RECORDS; i++) {
+      adDatabase.registerEntry(new Ad("user" + i % 7, Ad.AdType.BUY, "ad " + i, "k" + i % 11, 60, i));
+    }
+    for (int i = 0; i < 3 * AdSpliterator.CHUNK_RECORDS; i += 3) {
+      adDatabase.removeAd(new Ad("user" + i % 7, Ad.AdType.BUY, "ad " + i, "k" + i % 11, 60, i));
+    }
+    adDatabase.registerEntry(new Ad("user0", Ad.AdType.BUY, "ad 0", "k0", 60, 0));
+    assertNotNull(adDatabase.spliterator().trySplit());
+    List<Ad> scannedAds = adDatabase.scan().collect(Collectors.toList());
+    assertEquals(2 * AdSpliterator.CHUNK_RECORDS + 1, scannedAds.size());
+    assertEquals(adDatabase.getAds(), scannedAds);
+    assertEquals(adDatabase.getAds(), open(path).getAds());
+  }
+
+  @Test
+  public void recordFilterTest() throws IOException, IllegalArgumentException {
+    AdDatabase adDatabase = open(System.getProperty("user.home") + "/Desktop" + "/AdDB");
+    adDatabase.clearDatabase();
+    adDatabase.registerEntry(new Ad("marco", Ad.AdType.BUY, "bike", "bike", 60, 300));
+    adDatabase.registerEntry(new Ad("luca", Ad.AdType.SELL, "bike", "bike", 60, 200));
+    adDatabase.registerEntry(new Ad("marco", Ad.AdType.SELL, "car", "car", 60, 9000));
+    adDatabase.removeAd(new Ad("marco", Ad.AdType.BUY, "bike", "bike", 60, 300));
+    byte[] owner = "marco".getBytes(StandardCharsets.UTF_8);
+    long now = Instant.now().getEpochSecond();
+    int ownedRecords = 0, ownedSellAds = 0;
+    try (AdDatabase.Iterator iterator = adDatabase.new Iterator()) {
+      while(iterator.hasNext()) {
+        AdRecordReader record = iterator.nextRecord();
+        assertFalse(record.hasExpired(now));
+        if(!record.isOwnedBy(owner)) continue;
+        ownedRecords++;
+        if(!record.isTombstone() && record.getType() == Ad.AdType.SELL) {
+          ownedSellAds++;
+          assertEquals(9000, record.getPrice(), 0);
+          assertEquals("car", record.getAd().getDescription());
+        }
+      }
+    }
+    assertEquals(3, ownedRecords);
+    assertEquals(1, ownedSellAds);
+  }
+
+  @Test
+  public void tornTailTest() throws IOException, IllegalArgumentException {
+    String filePath = System.getProperty("user.home") + "/Desktop" + "/AdDBTorn";
+    AdDatabase adDatabase = open(filePath);
+    adDatabase.clearDatabase();
+    adDatabase.registerEntry(new Ad("marco", Ad.AdType.BUY, "adssad", "asdsa,asds,fad", 60, 300));
+    long length = adDatabase.length();
+    byte[] log = Files.readAllBytes(Paths.get(filePath));
+    byte[] halfRecord = Arrays.copyOfRange(log, AdRecordWriter.MAGIC.length, (AdRecordWriter.MAGIC.length + log.length) / 2);
+    Files.write(Paths.get(filePath), halfRecord, StandardOpenOption.APPEND);
+    assertEquals(1, adDatabase.getAds().size());
+    assertEquals(length, adDatabase.length());
+    Files.write(Paths.get(filePath), halfRecord, StandardOpenOption.APPEND);
+    AdDatabase reopenedAdDatabase = open(filePath);
+    assertEquals(1, reopenedAdDatabase.getAds().size());
+    assertEquals(length, reopenedAdDatabase.length());
+    reopenedAdDatabase.registerEntry(new Ad("luca", Ad.AdType.SELL, "adssad", "asdsa", 60, 300));
+    assertEquals(2, open(filePath).getAds().size());
+  }
+
+  @Test
+  public void malformedRecordTest() throws IOException, IllegalArgumentException {
+    expectedException.expect(IOException.class);
+    expectedException.expectMessage("Malformed ad record");
+
+    String filePath = System.getProperty("user.home") + "/Desktop" + "/AdDBMalformed";
+    ByteBuffer log = ByteBuffer.allocate(AdRecordWriter.MAGIC.length + 64);
+    log.put(AdRecordWriter.MAGIC);
+    log.putInt(24).put((byte)7).put((byte)0).putLong(Long.MAX_VALUE).putDouble(300);
+    log.putShort((short)0).putShort((short)0).putShort((short)0);
+    Files.write(Paths.get(filePath), Arrays.copyOf(log.array(), log.position()));
+    open(filePath);
+  }
+
+  @Test
+  public void keywordCountTest() throws IOException, IllegalArgumentException {
+    String filePath = System.getProperty("user.home") + "/Desktop" + "/AdDBKeywords";
+    AdDatabase adDatabase = open(filePath);
+    adDatabase.clearDatabase();
+    Ad ad = new Ad("marco", Ad.AdType.BUY, "adssad", String.join(",", Collections.nCopies(40001, "a")), 60, 300);
+    adDatabase.registerEntry(ad);
+    Ad oversizedAd = new Ad("luca", Ad.AdType.SELL, "adssad", String.join(",", Collections.nCopies(70000, "a")), 60, 300);
+    assertTrue(AdRecordWriter.canWrite(ad));
+    assertFalse(AdRecordWriter.canWrite(oversizedAd));
+    try {
+      adDatabase.registerEntry(oversizedAd);
+      fail();
+    } catch (IOException e) {
+      assertEquals("Too many keywords for an ad record", e.getMessage());
+    }
+    assertFalse(adDatabase.containsEntry(oversizedAd));
+    AdDatabase reopenedAdDatabase = open(filePath);
+    assertEquals(1, reopenedAdDatabase.getAds().size());
+    assertEquals(40001, reopenedAdDatabase.getAds().get(0).getKeywords().length);
+  }
+
+  @Test
+  public void migrationTest() throws IOException, IllegalArgumentException {
+    String filePath = System.getProperty("user.home") + "/Desktop" + "/AdDBText";
+    Ad ad = new Ad("marco", Ad.AdType.BUY, "adssad", "asdsa,asds,fad", 60, 300);
+    Ad removedAd = new Ad("luca", Ad.AdType.SELL, "adssad", "asdsa", 60, 300);
+    PrintWriter printWriter = new PrintWriter(filePath);
+    printWriter.println(ad);
+    printWriter.println(removedAd);
+    printWriter.println("Removed");
+    printWriter.println(removedAd);
+    printWriter.close();
+    AdDatabase adDatabase = open(filePath);
+    assertTrue(AdDatabaseMigrator.isBinary(adDatabase));
+    assertEquals(1, adDatabase.getAds().size());
+    assertTrue(adDatabase.containsEntry(ad));
+  }
+
+  @Test
+  public void malformedMigrationTest() throws IOException, IllegalArgumentException {
+    String filePath = System.getProperty("user.home") + "/Desktop" + "/AdDBMalformedText";
+    Ad ad = new Ad("marco", Ad.AdType.BUY, "adssad", "asdsa,asds,fad", 60, 300);
+    PrintWriter printWriter = new PrintWriter(filePath);
+    printWriter.print(ad.toString().replace("Price: 300", "Price: three hundred"));
+    printWriter.close();
+    byte[] text = Files.readAllBytes(Paths.get(filePath));
+    try {
+      open(filePath);
+      fail();
+    } catch (IOException e) {
+      assertTrue(e.getMessage().startsWith("Malformed ad record in"));
+    }
+    assertArrayEquals(text, Files.readAllBytes(Paths.get(filePath)));
+    assertFalse(Files.exists(Paths.get(filePath + ".migrate")));
+  }
+
+  private AdDatabase open(String filePath) throws IOException {
+    AdDatabase adDatabase = new AdDatabase(filePath);
+    adDatabases.add(adDatabase);
+    return adDatabase;
+  }
 }
@@ -49,6 +49,12 @@ public class AdTest {
     assertEquals(false, a.hasExpired());
   }
 
+  @Test
+  public void hasExpiredAtTest() {
+    assertFalse(a.hasExpired(a.getExpiration()));
+    assertTrue(a.hasExpired(a.getExpiration() + 1));
+  }
+
   @Test
   public void getRemainingDaysTest() {
     assertEquals(20, a.getRemainingDays());
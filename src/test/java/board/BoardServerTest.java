@@ -0,0 +1,139 @@
+/**
+ * Package containing the fundamental objects of the Board application.
+ */
+package board;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Scanner;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import board.server.BoardServer;
+import board.service.BoardException;
+import board.service.BoardService;
+
+public class BoardServerTest {
+
+  final String USR_FILE_PATH = System.getProperty("user.home") + "/Desktop" + "/SrvUsrDatabase";
+  final String AD_FILE_PATH = System.getProperty("user.home") + "/Desktop" + "/SrvAdDB";
+
+  private BoardService boardService;
+  private BoardServer boardServer;
+
+  @Before
+  public void setUp() throws BoardException, IOException {
+    new File(USR_FILE_PATH).delete();
+    new File(AD_FILE_PATH).delete();
+    boardService = new BoardService(USR_FILE_PATH, AD_FILE_PATH);
+    boardServer = new BoardServer(boardService, new InetSocketAddress("localhost", 0));
+    boardServer.start();
+  }
+
+  @After
+  public void tearDown() throws BoardException {
+    boardServer.stop(0);
+    boardService.close();
+  }
+
+  @Test
+  public void sessionTest() throws IOException {
+    String credentials = "{\"username\":\"marco\",\"password\":\"654984d\"}";
+    assertEquals(201, request("POST", "/api/register", null, credentials).status);
+    assertEquals(409, request("POST", "/api/register", null, credentials).status);
+    assertEquals(401, request("POST", "/api/login", null, "{\"username\":\"marco\",\"password\":\"x\"}").status);
+    assertEquals(400, request("POST", "/api/login", null, "{\"username\":").status);
+    assertEquals(401, request("GET", "/api/ads", null, null).status);
+    String token = login(credentials);
+    assertEquals(200, request("GET", "/api/ads", token, null).status);
+    assertEquals(204, request("POST", "/api/logout", token, "").status);
+    assertEquals(401, request("GET", "/api/ads", token, null).status);
+  }
+
+  @Test
+  public void adsTest() throws IOException {
+    request("POST", "/api/register", null, "{\"username\":\"marco\",\"password\":\"654984d\"}");
+    request("POST", "/api/register", null, "{\"username\":\"luca\",\"password\":\"654984d\"}");
+    String marco = login("{\"username\":\"marco\",\"password\":\"654984d\"}");
+    String luca = login("{\"username\":\"luca\",\"password\":\"654984d\"}");
+    String ad = "{\"type\":\"BUY\",\"description\":\"bike\",\"keywords\":[\"bike\",\"wheels\"],\"days\":60,\"price\":300}";
+    assertEquals(201, request("POST", "/api/ads", marco, ad).status);
+    assertEquals(409, request("POST", "/api/ads", marco, ad).status);
+    assertEquals(400, request("POST", "/api/ads", marco, "{\"type\":\"RENT\"}").status);
+    assertEquals(201, request("POST", "/api/ads", luca,
+      "{\"type\":\"SELL\",\"description\":\"bike\",\"keywords\":\"bike\",\"days\":60,\"price\":200}").status);
+    Response ads = request("GET", "/api/ads", marco, null);
+    assertTrue(ads.body.startsWith("[{\"owner\":\"marco\",\"type\":\"BUY\",\"description\":\"bike\""));
+    Response matches = request("GET", "/api/matches?max=10", marco, null);
+    assertEquals(200, matches.status);
+    assertTrue(matches.body.contains("\"owner\":\"luca\""));
+    assertTrue(matches.body.contains("\"score\":"));
+    assertEquals(404, request("DELETE", "/api/ads", luca, ad).status);
+    assertEquals(204, request("DELETE", "/api/ads", marco, ad).status);
+    assertEquals("[]", request("GET", "/api/ads", marco, null).body);
+  }
+
+  @Test
+  public void adLimitsTest() throws IOException, BoardException {
+    request("POST", "/api/register", null, "{\"username\":\"marco\",\"password\":\"654984d\"}");
+    String marco = login("{\"username\":\"marco\",\"password\":\"654984d\"}");
+    Response response = request("POST", "/api/ads", marco,
+      "{\"type\":\"BUY\",\"description\":\"bike\",\"keywords\":\"bike\",\"days\":1e300,\"price\":300}");
+    assertEquals(400, response.status);
+    assertTrue(response.body.contains("Missing or invalid days"));
+    String keywords = "a" + String.join("", Collections.nCopies(40000, ",")) + "a";
+    response = request("POST", "/api/ads", marco,
+      "{\"type\":\"BUY\",\"description\":\"bike\",\"keywords\":\"" + keywords + "\",\"days\":60,\"price\":300}");
+    assertEquals(201, response.status);
+    boardService.close();
+    boardService = new BoardService(USR_FILE_PATH, AD_FILE_PATH);
+    assertEquals(1, boardService.getAdsOf("marco").size());
+  }
+
+  private static class Response {
+    int status;
+    String body;
+  }
+
+  private String login(String credentials) throws IOException {
+    Response response = request("POST", "/api/login", null, credentials);
+    assertEquals(200, response.status);
+    return response.body.replaceAll("^\\{\"token\":\"(.*)\"\\}$", "$1");
+  }
+
+  private Response request(String method, String path, String token, String body) throws IOException {
+    URL url = new URL("http://localhost:" + boardServer.getPort() + path);
+    HttpURLConnection connection = (HttpURLConnection)url.openConnection();
+    connection.setRequestMethod(method);
+    if(token != null) connection.setRequestProperty("Authorization", "Bearer " + token);
+    if(body != null) {
+      connection.setDoOutput(true);
+      try (OutputStream out = connection.getOutputStream()) {
+        out.write(body.getBytes(StandardCharsets.UTF_8));
+      }
+    }
+    Response response = new Response();
+    response.status = connection.getResponseCode();
+    InputStream in = response.status < 400 ? connection.getInputStream() : connection.getErrorStream();
+    if(in == null) {
+      response.body = "";
+    } else {
+      try (Scanner scanner = new Scanner(in, "UTF-8").useDelimiter("\\A")) {
+        response.body = scanner.hasNext() ? scanner.next() : "";
+      }
+    }
+    connection.disconnect();
+    return response;
+  }
+}
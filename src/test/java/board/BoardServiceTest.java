@@ -0,0 +1,71 @@
+/**
+ * Package containing the fundamental objects of the Board application.
+ */
+package board;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import board.objects.Ad;
+import board.service.BoardException;
+import board.service.BoardService;
+
+public class BoardServiceTest {
+
+  final String USR_FILE_PATH = System.getProperty("user.home") + "/Desktop" + "/SvcUsrDatabase";
+  final String AD_FILE_PATH = System.getProperty("user.home") + "/Desktop" + "/SvcAdDB";
+
+  private BoardService boardService;
+
+  @Before
+  public void setUp() throws BoardException {
+    new File(USR_FILE_PATH).delete();
+    new File(AD_FILE_PATH).delete();
+    boardService = new BoardService(USR_FILE_PATH, AD_FILE_PATH);
+  }
+
+  @After
+  public void tearDown() throws BoardException {
+    boardService.close();
+  }
+
+  @Test
+  public void registerAndLoginTest() throws BoardException {
+    boardService.register("marco", "654984d");
+    boardService.login("marco", "654984d");
+    assertReason(BoardException.Reason.USERNAME_TAKEN, () -> boardService.register("marco", "other"));
+    assertReason(BoardException.Reason.INVALID_CREDENTIALS, () -> boardService.login("marco", "wrong"));
+    assertReason(BoardException.Reason.INVALID_USER, () -> boardService.register("mar co", "654984d"));
+  }
+
+  @Test
+  public void adsTest() throws BoardException {
+    Ad ad = new Ad("marco", Ad.AdType.BUY, "bike", "bike,wheels", 60, 300);
+    boardService.saveAd("marco", ad);
+    boardService.saveAd("luca", new Ad("luca", Ad.AdType.SELL, "bike", "bike", 60, 200));
+    assertReason(BoardException.Reason.AD_ALREADY_SAVED, () -> boardService.saveAd("marco", ad));
+    assertReason(BoardException.Reason.NOT_OWNER, () -> boardService.removeAd("luca", ad));
+    assertEquals(1, boardService.getAdsOf("marco").size());
+    assertEquals(1, boardService.match("marco", 10).size());
+    assertTrue(boardService.removeAd("marco", ad));
+    assertFalse(boardService.removeAd("marco", ad));
+  }
+
+  private interface ServiceCall {
+    void run() throws BoardException;
+  }
+
+  private void assertReason(BoardException.Reason reason, ServiceCall call) {
+    try {
+      call.run();
+      fail("Expected " + reason);
+    } catch (BoardException e) {
+      assertEquals(reason, e.getReason());
+    }
+  }
+}
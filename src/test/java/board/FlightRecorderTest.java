@@ -0,0 +1,73 @@
+/**
+ * Package containing the fundamental objects of the Board application.
+ */
+package board;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import board.objects.Ad;
+import board.objects.AdDatabase;
+import board.objects.User;
+import board.objects.UserDatabase;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+public class FlightRecorderTest {
+
+  final String USR_FILE_PATH = System.getProperty("user.home") + "/Desktop" + "/JfrUsrDatabase";
+  final String AD_FILE_PATH = System.getProperty("user.home") + "/Desktop" + "/JfrAdDB";
+  final String RECORDING_PATH = System.getProperty("user.home") + "/Desktop" + "/Board.jfr";
+
+  @Test
+  public void eventsTest() throws IOException {
+    new File(USR_FILE_PATH).delete();
+    new File(AD_FILE_PATH).delete();
+    List<RecordedEvent> events;
+    try (Recording recording = new Recording()) {
+      for (String event : new String[] {"AdScan", "AdRewrite", "LoginAttempt", "MatchRun"}) {
+        recording.enable("board." + event).withoutThreshold();
+      }
+      recording.start();
+      try (UserDatabase userDatabase = new UserDatabase(USR_FILE_PATH);
+           AdDatabase adDatabase = new AdDatabase(AD_FILE_PATH)) {
+        userDatabase.registerEntry(new User("marco", "654984d"));
+        userDatabase.login("marco", "654984d");
+        adDatabase.registerEntry(new Ad("marco", Ad.AdType.BUY, "bike", "bike", 60, 300));
+        adDatabase.registerEntry(new Ad("luca", Ad.AdType.SELL, "bike", "bike", 60, 200));
+        adDatabase.getMatchesOf("marco", 10);
+        adDatabase.clearDatabase();
+      }
+      recording.stop();
+      Path path = new File(RECORDING_PATH).toPath();
+      recording.dump(path);
+      events = RecordingFile.readAllEvents(path);
+    }
+    List<String> names = events.stream()
+      .map(event -> event.getEventType().getName())
+      .collect(Collectors.toList());
+    assertTrue(names.contains("board.AdScan"));
+    assertTrue(names.contains("board.AdRewrite"));
+    RecordedEvent login = find(events, "board.LoginAttempt");
+    assertEquals("marco", login.getString("username"));
+    assertTrue(login.getBoolean("success"));
+    RecordedEvent match = find(events, "board.MatchRun");
+    assertEquals(1, match.getInt("candidates"));
+    assertEquals(1, match.getInt("matches"));
+  }
+
+  private RecordedEvent find(List<RecordedEvent> events, String name) {
+    return events.stream()
+      .filter(event -> event.getEventType().getName().equals(name))
+      .findFirst()
+      .orElseThrow(() -> new AssertionError("No " + name + " event"));
+  }
+}
@@ -0,0 +1,74 @@
+/**
+ * Package containing the fundamental objects of the Board application.
+ */
+package board;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+import board.metrics.Histogram;
+import board.metrics.Metrics;
+import board.objects.UserDatabase;
+
+public class MetricsTest {
+
+  final String FILE_PATH = System.getProperty("user.home") + "/Desktop" + "/Metrics";
+  final String USR_FILE_PATH = System.getProperty("user.home") + "/Desktop" + "/MetricsUsrDatabase";
+
+  @Test
+  public void histogramTest() {
+    Histogram histogram = Metrics.histogram("test.histogram");
+    assertSame(histogram, Metrics.histogram("test.histogram"));
+    for (int value = 1; value <= 1000; value++) {
+      histogram.record(value);
+    }
+    Histogram.Snapshot snapshot = histogram.snapshot();
+    assertEquals(1000, snapshot.getCount());
+    assertEquals(500500, snapshot.getSum());
+    assertEquals(1000, snapshot.getMax());
+    assertEquals(500, snapshot.getP50(), 500 / Histogram.SUB_BUCKETS);
+    assertEquals(990, snapshot.getP99(), 990 / Histogram.SUB_BUCKETS);
+    assertTrue(snapshot.getP999() <= snapshot.getMax());
+  }
+
+  @Test
+  public void loginTest() throws IOException {
+    new File(USR_FILE_PATH).delete();
+    UserDatabase userDatabase = new UserDatabase(USR_FILE_PATH);
+    long failures = Metrics.counter("user.login.failures").get();
+    long logins = Metrics.histogram("user.login").snapshot().getCount();
+    try {
+      userDatabase.login("nobody", "password");
+      fail();
+    } catch (IllegalArgumentException e) {
+      // Expected
+    }
+    assertEquals(failures + 1, Metrics.counter("user.login.failures").get());
+    assertEquals(logins + 1, Metrics.histogram("user.login").snapshot().getCount());
+  }
+
+  @Test
+  public void exportTest() throws IOException, JMException {
+    Metrics.counter("test.counter").add(3);
+    Metrics.histogram("test.latency").record(42);
+    Metrics.startExport();
+    ObjectName name = new ObjectName("board:type=Metrics");
+    Object counters = ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Counters");
+    assertTrue(counters.toString().contains("test.counter"));
+    Object histograms = ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Histograms");
+    assertTrue(histograms.toString().contains("test.latency"));
+    Path path = new File(FILE_PATH).toPath();
+    Metrics.getRegistry().writeSnapshot(path);
+    assertTrue(new String(Files.readAllBytes(path), "UTF-8").contains("test.counter 3"));
+  }
+}
@@ -4,8 +4,15 @@
 package board;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.junit.Rule;
 import org.junit.Test;
@@ -65,4 +72,91 @@ public class UserDatabaseTest {
     userDatabase.registerEntry(new User("ghhs", "hjkg"));
     assertEquals(true, userDatabase.containsEntry(new User("ghhs", "hjkg")));
   }
+
+  @Test
+  public void wrongPasswordLoginTest() throws IllegalArgumentException, IOException {
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Invalid username and/or password");
+
+    UserDatabase userDatabase = new UserDatabase(FILE_PATH);
+    userDatabase.delete();
+    userDatabase.createNewFile();
+    userDatabase.registerEntry(new User("marco", "12"));
+    userDatabase.setUsername("marco");
+    userDatabase.setPassword("13");
+    userDatabase.login();
+  }
+
+  @Test
+  public void hashedPasswordTest() throws IllegalArgumentException, IOException {
+    UserDatabase userDatabase = new UserDatabase(FILE_PATH);
+    userDatabase.delete();
+    userDatabase.createNewFile();
+    userDatabase.registerEntry(new User("marco", "secret12"));
+    assertFalse(userDatabase.toString().contains("secret12"));
+    UserDatabase newUserDatabase = new UserDatabase(FILE_PATH);
+    newUserDatabase.setUsername("marco");
+    newUserDatabase.setPassword("secret12");
+    newUserDatabase.login();
+  }
+
+  @Test
+  public void streamTest() throws IllegalArgumentException, IOException {
+    UserDatabase userDatabase = new UserDatabase(FILE_PATH);
+    userDatabase.delete();
+    userDatabase.createNewFile();
+    userDatabase.registerEntry(new User("marco", "12"));
+    userDatabase.registerEntry(new User("luca", "34"));
+    try (Stream<User> users = userDatabase.stream()) {
+      assertEquals(Arrays.asList("marco", "luca"),
+        users.map(User::getUsername).collect(Collectors.toList()));
+    }
+  }
+
+  @Test
+  public void equalsTest() throws IllegalArgumentException, IOException {
+    UserDatabase userDatabase = new UserDatabase(FILE_PATH);
+    userDatabase.delete();
+    userDatabase.createNewFile();
+    UserDatabase otherUserDatabase = new UserDatabase(FILE_PATH);
+    long version = otherUserDatabase.getVersion();
+    userDatabase.registerEntry(new User("Lorenzo", "654984d"));
+    assertNotEquals(version, otherUserDatabase.getVersion());
+    assertEquals(userDatabase, otherUserDatabase);
+    assertEquals(userDatabase.hashCode(), otherUserDatabase.hashCode());
+    assertEquals(userDatabase.toString(), otherUserDatabase.toString());
+    userDatabase.registerEntry(new User("Marco", "654984d"));
+    assertNotEquals(userDatabase, new UserDatabase(FILE_PATH + "Other"));
+    new UserDatabase(FILE_PATH + "Other").delete();
+  }
+
+  @Test
+  public void legacyPasswordTest() throws IllegalArgumentException, IOException {
+    PrintWriter printWriter = new PrintWriter(FILE_PATH);
+    printWriter.println(new User("marco", "654984d"));
+    printWriter.println(new User("luca", "secret12"));
+    printWriter.close();
+    UserDatabase userDatabase = new UserDatabase(FILE_PATH);
+    userDatabase.login("marco", "654984d");
+    assertFalse(userDatabase.toString().contains("654984d"));
+    assertTrue(userDatabase.toString().contains("secret12"));
+    UserDatabase newUserDatabase = new UserDatabase(FILE_PATH);
+    newUserDatabase.login("marco", "654984d");
+    newUserDatabase.login("luca", "secret12");
+    try (Stream<User> users = newUserDatabase.stream()) {
+      assertEquals(Arrays.asList("marco", "luca"),
+        users.map(User::getUsername).collect(Collectors.toList()));
+    }
+  }
+
+  @Test
+  public void malformedHashTest() throws IllegalArgumentException, IOException {
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Invalid username and/or password");
+
+    PrintWriter printWriter = new PrintWriter(FILE_PATH);
+    printWriter.println(new User("marco", "pbkdf2$many$salt$hash"));
+    printWriter.close();
+    new UserDatabase(FILE_PATH).login("marco", "pbkdf2$many$salt$hash");
+  }
 }